@@ -1,583 +1,5373 @@
-import java.awt.BorderLayout;
-import java.awt.Color;
-import java.awt.Component;
-import java.awt.Dimension;
-import java.awt.Font;
-import java.awt.GridBagConstraints;
-import java.awt.GridBagLayout;
-import java.awt.Insets;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.prefs.Preferences;
-
-import javax.swing.JButton;
-import javax.swing.JFileChooser;
-import javax.swing.JFrame;
-import javax.swing.JLabel;
-import javax.swing.JOptionPane;
-import javax.swing.JPanel;
-import javax.swing.JScrollPane;
-import javax.swing.JTabbedPane;
-import javax.swing.JTextField;
-import javax.swing.SwingUtilities;
-import javax.swing.SwingWorker;
-import javax.swing.Box;
-import javax.swing.BoxLayout;
-import javax.swing.ImageIcon;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
-import javax.swing.JDialog;
-import javax.swing.JList;
-import javax.swing.ListSelectionModel;
-import javax.swing.event.ListSelectionEvent;
-import javax.swing.event.ListSelectionListener;
-import javax.swing.DefaultListModel;
-import javax.swing.ListCellRenderer;
-
-public class INIEditor extends JFrame {
-    private final JTabbedPane tabbedPane;
-    private static final Dimension TEXT_FIELD_SIZE = new Dimension(110, 20);
-    private File lastSelectedFolder; // Remember the last selected folder
-    private static final String PREF_KEY_DEFAULT_FOLDER = "defaultFolder";
-    private static final String PREF_KEY_RECENT_FOLDERS = "recentFolders";
-    private static final int MAX_RECENT_FOLDERS = 5;
-    private final Preferences prefs;
-
-    public INIEditor() {
-        setTitle("INI Editor");
-        setSize(800, 600);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setLayout(new BorderLayout());
-
-        prefs = Preferences.userNodeForPackage(INIEditor.class);
-
-        tabbedPane = new JTabbedPane(JTabbedPane.TOP);
-        add(tabbedPane, BorderLayout.CENTER);
-
-        JButton selectFolderButton = new JButton("Select Folder");
-        selectFolderButton.addActionListener(e -> selectFolderAndScan());
-
-        JButton saveAllButton = new JButton("Save All");
-        saveAllButton.addActionListener(e -> saveAllINIFiles());
-
-        JButton saveButton = new JButton("Save Current Tab");
-        saveButton.addActionListener(e -> saveCurrentTab());
-
-        JButton makeDefaultFolderButton = new JButton("Make Default Folder");
-        makeDefaultFolderButton.addActionListener(e -> makeDefaultFolder());
-
-        JButton recentFoldersButton = new JButton("Recent Folders");
-        recentFoldersButton.addActionListener(e -> showRecentFoldersDialog());
-
-        JPanel buttonPanel = new JPanel();
-        buttonPanel.add(selectFolderButton);
-        buttonPanel.add(saveAllButton);
-        buttonPanel.add(saveButton);
-        buttonPanel.add(makeDefaultFolderButton);
-        buttonPanel.add(recentFoldersButton);
-        add(buttonPanel, BorderLayout.SOUTH);
-
-        loadDefaultFolder();
-    }
-
-    private void makeDefaultFolder() {
-        if (lastSelectedFolder != null) {
-            prefs.put(PREF_KEY_DEFAULT_FOLDER, lastSelectedFolder.getAbsolutePath());
-            addRecentFolder(lastSelectedFolder.getAbsolutePath());
-            JOptionPane.showMessageDialog(this, "Default folder set to: " + lastSelectedFolder.getAbsolutePath(), "Success", JOptionPane.INFORMATION_MESSAGE);
-        } else {
-            JOptionPane.showMessageDialog(this, "No folder selected to set as default.", "Error", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-
-    private void loadDefaultFolder() {
-        String folderPath = prefs.get(PREF_KEY_DEFAULT_FOLDER, null);
-        if (folderPath != null) {
-            File folder = new File(folderPath);
-            if (folder.isDirectory()) {
-                lastSelectedFolder = folder;
-                clearTabs();
-                new ScanFolderWorker(folder, tabbedPane, this).execute();
-            }
-        }
-    }
-
-    private void addRecentFolder(String folderPath) {
-        Deque<String> recentFolders = new ArrayDeque<>(MAX_RECENT_FOLDERS);
-        String[] storedFolders = prefs.get(PREF_KEY_RECENT_FOLDERS, "").split(";");
-        for (String storedFolder : storedFolders) {
-            if (!storedFolder.isBlank() && !storedFolder.equals(folderPath)) {
-                recentFolders.add(storedFolder);
-            }
-        }
-        recentFolders.addFirst(folderPath);
-        while (recentFolders.size() > MAX_RECENT_FOLDERS) {
-            recentFolders.removeLast();
-        }
-        prefs.put(PREF_KEY_RECENT_FOLDERS, String.join(";", recentFolders));
-    }
-
-    private void showRecentFoldersDialog() {
-        String[] recentFolders = prefs.get(PREF_KEY_RECENT_FOLDERS, "").split(";");
-        if (recentFolders.length == 0 || recentFolders[0].isBlank()) {
-            JOptionPane.showMessageDialog(this, "No recent folders available.", "Info", JOptionPane.INFORMATION_MESSAGE);
-            return;
-        }
-
-        JDialog dialog = new JDialog(this, "Recent Folders", true);
-        dialog.setSize(400, 300);
-        dialog.setLayout(new BorderLayout());
-
-        DefaultListModel<String> listModel = new DefaultListModel<>();
-        for (String folder : recentFolders) {
-            listModel.addElement(folder);
-        }
-
-        JList<String> folderList = new JList<>(listModel);
-        folderList.setCellRenderer(new RecentFolderRenderer(folderList, listModel));
-        folderList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        folderList.addListSelectionListener(new ListSelectionListener() {
-            @Override
-            public void valueChanged(ListSelectionEvent e) {
-                if (!e.getValueIsAdjusting()) {
-                    String selectedFolder = folderList.getSelectedValue();
-                    if (selectedFolder != null) {
-                        File folder = new File(selectedFolder);
-                        if (folder.isDirectory()) {
-                            lastSelectedFolder = folder;
-                            clearTabs();
-                            new ScanFolderWorker(folder, tabbedPane, INIEditor.this).execute();
-                            dialog.dispose();
-                        } else {
-                            JOptionPane.showMessageDialog(INIEditor.this, "Selected folder does not exist.", "Error", JOptionPane.ERROR_MESSAGE);
-                        }
-                    }
-                }
-            }
-        });
-
-        JScrollPane scrollPane = new JScrollPane(folderList);
-        dialog.add(scrollPane, BorderLayout.CENTER);
-
-        dialog.setLocationRelativeTo(this);
-        dialog.setVisible(true);
-    }
-
-    private class RecentFolderRenderer extends JPanel implements ListCellRenderer<String> {
-        private final JLabel folderLabel;
-        private final JButton closeButton;
-        private final JList<String> folderList;
-        private final DefaultListModel<String> listModel;
-
-        public RecentFolderRenderer(JList<String> folderList, DefaultListModel<String> listModel) {
-            this.folderList = folderList;
-            this.listModel = listModel;
-            setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
-            folderLabel = new JLabel();
-            closeButton = new JButton("x");
-            closeButton.setOpaque(false);
-            closeButton.setContentAreaFilled(false);
-            closeButton.setBorderPainted(false);
-            closeButton.setFocusPainted(false);
-            closeButton.setMargin(new Insets(0, 5, 0, 0));
-            closeButton.setForeground(Color.BLACK);
-            closeButton.addMouseListener(new MouseAdapter() {
-                @Override
-                public void mouseEntered(MouseEvent e) {
-                    closeButton.setForeground(Color.RED);
-                }
-
-                @Override
-                public void mouseExited(MouseEvent e) {
-                    closeButton.setForeground(Color.BLACK);
-                }
-            });
-            closeButton.addActionListener(new ActionListener() {
-                @Override
-                public void actionPerformed(ActionEvent e) {
-                    int index = folderList.getSelectedIndex();
-                    if (index != -1) {
-                        listModel.remove(index);
-                        updateRecentFolders();
-                    }
-                }
-            });
-            add(folderLabel);
-            add(Box.createHorizontalGlue());
-            add(closeButton);
-        }
-
-        @Override
-        public Component getListCellRendererComponent(JList<? extends String> list, String value, int index, boolean isSelected, boolean cellHasFocus) {
-            folderLabel.setText(value);
-            if (isSelected) {
-                setBackground(list.getSelectionBackground());
-                setForeground(list.getSelectionForeground());
-            } else {
-                setBackground(list.getBackground());
-                setForeground(list.getForeground());
-            }
-            return this;
-        }
-
-        private void updateRecentFolders() {
-            StringBuilder sb = new StringBuilder();
-            for (int i = 0; i < listModel.size(); i++) {
-                if (i > 0) {
-                    sb.append(";");
-                }
-                sb.append(listModel.get(i));
-            }
-            prefs.put(PREF_KEY_RECENT_FOLDERS, sb.toString());
-        }
-    }
-
-    private void clearTabs() {
-        tabbedPane.removeAll();
-    }
-
-    private void selectFolderAndScan() {
-        JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
-        if (lastSelectedFolder != null) {
-            fileChooser.setCurrentDirectory(lastSelectedFolder); // Set the last selected folder
-        }
-        int result = fileChooser.showOpenDialog(this);
-        if (result == JFileChooser.APPROVE_OPTION) {
-            File folder = fileChooser.getSelectedFile();
-            lastSelectedFolder = folder; // Remember the selected folder
-            addRecentFolder(folder.getAbsolutePath()); // Add to recent folders
-            clearTabs();
-            new ScanFolderWorker(folder, tabbedPane, this).execute();
-        }
-    }
-
-    private static class ScanFolderWorker extends SwingWorker<Void, File> {
-        private final File folder;
-        private final JTabbedPane tabbedPane;
-        private final INIEditor editor;
-
-        public ScanFolderWorker(File folder, JTabbedPane tabbedPane, INIEditor editor) {
-            this.folder = folder;
-            this.tabbedPane = tabbedPane;
-            this.editor = editor;
-        }
-
-        @Override
-        protected Void doInBackground() throws Exception {
-            File[] files = folder.listFiles((dir, name) -> name.toLowerCase().endsWith(".ini"));
-            if (files != null) {
-                for (File file : files) {
-                    publish(file);
-                }
-            }
-            return null;
-        }
-
-        @Override
-        protected void process(List<File> chunks) {
-            for (File file : chunks) {
-                addINIFileTab(file, tabbedPane, editor);
-            }
-        }
-
-        @Override
-        protected void done() {
-            tabbedPane.revalidate();
-        }
-    }
-
-    private static void addINIFileTab(File file, JTabbedPane tabbedPane, INIEditor editor) {
-        JPanel panel = new JPanel(new GridBagLayout());
-        panel.setAlignmentX(Component.LEFT_ALIGNMENT);
-
-        JScrollPane scrollPane = new JScrollPane(panel);
-        scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
-        scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
-        scrollPane.getVerticalScrollBar().setUnitIncrement(16); // Increase vertical scroll speed
-        scrollPane.getHorizontalScrollBar().setUnitIncrement(16); // Increase horizontal scroll speed
-
-        tabbedPane.addTab(file.getName(), scrollPane);
-        int tabIndex = tabbedPane.getTabCount() - 1;
-        tabbedPane.putClientProperty("file_" + tabIndex, file);
-        tabbedPane.setTabComponentAt(tabIndex, createTabComponent(tabbedPane, file.getName()));
-        editor.new LoadINIFileWorker(file, panel).execute();
-    }
-
-    private static JPanel createTabComponent(JTabbedPane tabbedPane, String title) {
-        JPanel tabComponent = new JPanel();
-        tabComponent.setOpaque(false);
-        tabComponent.setLayout(new BoxLayout(tabComponent, BoxLayout.X_AXIS));
-
-        JLabel titleLabel = new JLabel(title);
-        tabComponent.add(titleLabel);
-
-        JButton closeButton = new JButton("x");
-        closeButton.setOpaque(false);
-        closeButton.setContentAreaFilled(false);
-        closeButton.setBorderPainted(false);
-        closeButton.setFocusPainted(false);
-        closeButton.setMargin(new Insets(0, 5, 0, 0));
-        closeButton.setForeground(Color.BLACK);
-        closeButton.addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseEntered(MouseEvent e) {
-                closeButton.setForeground(Color.RED);
-            }
-
-            @Override
-            public void mouseExited(MouseEvent e) {
-                closeButton.setForeground(Color.BLACK);
-            }
-        });
-        closeButton.addActionListener(new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                int index = tabbedPane.indexOfTabComponent(tabComponent);
-                if (index != -1) {
-                    tabbedPane.remove(index);
-                }
-            }
-        });
-        tabComponent.add(closeButton);
-
-        return tabComponent;
-    }
-
-    private class LoadINIFileWorker extends SwingWorker<Void, Void> {
-        private final File file;
-        private final JPanel panel;
-
-        public LoadINIFileWorker(File file, JPanel panel) {
-            this.file = file;
-            this.panel = panel;
-        }
-
-        @Override
-        protected Void doInBackground() throws Exception {
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                int row = 0;
-                String description;
-
-                GridBagConstraints gbc = new GridBagConstraints();
-                gbc.insets = new Insets(2, 2, 2, 2);
-                gbc.fill = GridBagConstraints.HORIZONTAL;
-                gbc.anchor = GridBagConstraints.WEST;
-                gbc.weightx = 0;
-                gbc.gridy = 0;
-
-                while ((line = reader.readLine()) != null) {
-                    if (line.startsWith(";")) {
-                        description = line.substring(1).trim();
-                        continue;
-                    }
-                    if (line.isBlank()) {
-                        continue;
-                    }
-                    if (line.startsWith("[")) {
-                        String section = line.trim();
-                        gbc.gridx = 0;
-                        gbc.gridwidth = 3;
-                        gbc.weightx = 1;
-                        gbc.insets = new Insets(10, 2, 2, 2); // Add more space above the section
-                        JLabel sectionLabel = new JLabel(section);
-                        sectionLabel.setFont(sectionLabel.getFont().deriveFont(Font.BOLD, sectionLabel.getFont().getSize() * 2)); // Double the font size
-                        sectionLabel.setOpaque(true);
-                        sectionLabel.setBackground(Color.DARK_GRAY); // Set dark background
-                        sectionLabel.setForeground(Color.WHITE); // Set text color to white
-                        panel.add(sectionLabel, gbc);
-                        row++;
-                        gbc.gridy = row;
-                        gbc.gridwidth = 1;
-                        gbc.insets = new Insets(2, 2, 2, 2); // Reset insets
-                        continue;
-                    }
-                    String[] parts = line.split("=", 2);
-                    if (parts.length == 2) {
-                        String key = parts[0].trim();
-                        String valuePart = parts[1].trim();
-                        String value;
-                        description = null;
-
-                        if (valuePart.contains(";")) {
-                            String[] valueDescription = valuePart.split(";", 2);
-                            value = valueDescription[0].trim();
-                            description = valueDescription[1].trim();
-                        } else if (valuePart.contains("//")) {
-                            String[] valueDescription = valuePart.split("//", 2);
-                            value = valueDescription[0].trim();
-                            description = valueDescription[1].trim();
-                        } else {
-                            value = valuePart;
-                        }
-
-                        gbc.gridx = 0;
-                        gbc.insets = new Insets(10, 2, 2, 2); // Add more space above the key-value pair
-                        JLabel keyLabel = new JLabel(key + ":");
-                        panel.add(keyLabel, gbc);
-
-                        gbc.gridx = 1;
-                        gbc.weightx = 1;
-                        JTextField textField = new JTextField(value.length());
-                        textField.putClientProperty("key", key);
-                        textField.setText(value); // Set the initial value
-                        int maxWidth = 300; // Set a maximum width for the text field
-                        textField.setPreferredSize(new Dimension(Math.min(maxWidth, textField.getPreferredSize().width), TEXT_FIELD_SIZE.height));
-                        textField.addFocusListener(new java.awt.event.FocusAdapter() {
-                            @Override
-                            public void focusGained(java.awt.event.FocusEvent e) {
-                                textField.selectAll(); // Auto-select all text when the textbox is clicked
-                            }
-                        });
-                        panel.add(textField, gbc);
-
-                        gbc.gridx = 2;
-                        gbc.weightx = 0;
-                        JLabel descriptionLabel = new JLabel(description != null ? description : "");
-                        panel.add(descriptionLabel, gbc);
-
-                        row++;
-                        gbc.gridy = row;
-                        gbc.insets = new Insets(2, 2, 2, 2); // Reset insets
-                    }
-                }
-
-                gbc.weighty = 1;
-                panel.add(new JLabel(), gbc);
-            }
-            return null;
-        }
-
-        @Override
-        protected void done() {
-            panel.revalidate();
-        }
-    }
-
-    private void saveAllINIFiles() {
-        for (int i = 0; i < tabbedPane.getTabCount(); i++) {
-            Component component = tabbedPane.getComponentAt(i);
-            if (component instanceof JScrollPane scrollPane) {
-                JPanel panel = (JPanel) scrollPane.getViewport().getView();
-                File file = (File) tabbedPane.getClientProperty("file_" + i);
-                if (file != null) {
-                    new SavePanelFieldsWorker(panel, file).execute();
-                }
-            }
-        }
-    }
-
-    private void saveCurrentTab() {
-        int selectedIndex = tabbedPane.getSelectedIndex();
-        if (selectedIndex != -1) {
-            Component component = tabbedPane.getComponentAt(selectedIndex);
-            if (component instanceof JScrollPane scrollPane) {
-                JPanel panel = (JPanel) scrollPane.getViewport().getView();
-                File file = (File) tabbedPane.getClientProperty("file_" + selectedIndex);
-                if (file != null) {
-                    new SavePanelFieldsWorker(panel, file).execute();
-                }
-            }
-        }
-    }
-
-    private class SavePanelFieldsWorker extends SwingWorker<Void, Void> {
-        private final JPanel panel;
-        private final File file;
-
-        public SavePanelFieldsWorker(JPanel panel, File file) {
-            this.panel = panel;
-            this.file = file;
-        }
-
-        @Override
-        protected Void doInBackground() throws Exception {
-            Map<String, String> updatedValues = new HashMap<>();
-            for (Component component : panel.getComponents()) {
-                if (component instanceof JTextField textField) {
-                    String key = (String) textField.getClientProperty("key");
-                    String value = textField.getText();
-                    updatedValues.put(key, value);
-                }
-            }
-
-            // Read the existing content of the file
-            List<String> lines = new ArrayList<>();
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    lines.add(line);
-                }
-            }
-
-            // Write the updated content back to the file
-            try (FileWriter writer = new FileWriter(file)) {
-                for (String line : lines) {
-                    if (line.startsWith(";") || line.isBlank() || line.startsWith("[")) {
-                        writer.write(line + "\n");
-                        continue;
-                    }
-                    String[] parts = line.split("=", 2);
-                    if (parts.length == 2) {
-                        String key = parts[0].trim();
-                        String valuePart = parts[1].trim();
-                        String description = null;
-
-                        if (valuePart.contains(";")) {
-                            String[] valueDescription = valuePart.split(";", 2);
-                            valuePart = valueDescription[0].trim();
-                            description = valueDescription[1].trim();
-                        } else if (valuePart.contains("//")) {
-                            String[] valueDescription = valuePart.split("//", 2);
-                            valuePart = valueDescription[0].trim();
-                            description = valueDescription[1].trim();
-                        }
-
-                        if (updatedValues.containsKey(key)) {
-                            writer.write(key + "=" + updatedValues.get(key));
-                            if (description != null) {
-                                writer.write(" ;" + description);
-                            }
-                            writer.write("\n");
-                        } else {
-                            writer.write(line + "\n");
-                        }
-                    } else {
-                        writer.write(line + "\n");
-                    }
-                }
-            }
-            return null;
-        }
-
-        @Override
-        protected void done() {
-            try {
-                get();
-                JOptionPane.showMessageDialog(INIEditor.this, "File saved successfully: " + file.getName(), "Success", JOptionPane.INFORMATION_MESSAGE);
-            } catch (InterruptedException | ExecutionException e) {
-                JOptionPane.showMessageDialog(INIEditor.this, "Error saving file: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
-        }
-    }
-
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            INIEditor editor = new INIEditor();
-            editor.setVisible(true);
-        });
-    }
-}
+import java.awt.AWTEvent;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.EventQueue;
+import java.awt.Font;
+import java.awt.Insets;
+import java.awt.Toolkit;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.text.DecimalFormat;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.EventObject;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.prefs.Preferences;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import javax.management.NotificationEmitter;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JFileChooser;
+import javax.swing.JFormattedTextField;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.AbstractCellEditor;
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.UIManager;
+import javax.swing.ImageIcon;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import javax.swing.JDialog;
+import javax.swing.JList;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.DefaultListModel;
+import javax.swing.ListCellRenderer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellEditor;
+import javax.swing.text.DefaultFormatterFactory;
+import javax.swing.text.NumberFormatter;
+
+public class INIEditor extends JFrame {
+    private final JTabbedPane tabbedPane;
+    private static final Dimension TEXT_FIELD_SIZE = new Dimension(110, 20);
+    private File lastSelectedFolder; // Remember the last selected folder
+    private static final String PREF_KEY_DEFAULT_FOLDER = "defaultFolder";
+    private static final String PREF_KEY_RECENT_FOLDERS = "recentFolders";
+    private static final int MAX_RECENT_FOLDERS = 5;
+    private static final String PREF_KEY_BACKUP_COUNT = "backupCount";
+    private static final int DEFAULT_BACKUP_COUNT = 1;
+    private static final String PREF_KEY_SCAN_SUBFOLDERS = "scanSubfolders";
+    private static final String PREF_KEY_SCAN_MAX_DEPTH = "scanMaxDepth";
+    static final int DEFAULT_SCAN_MAX_DEPTH = 8;
+    private static final String PREF_KEY_SCAN_EXCLUDES = "scanExcludes";
+    private static final String DEFAULT_SCAN_EXCLUDES = ".*"; // Hidden folders such as .git
+    private static final String PREF_KEY_PREFETCH_NEIGHBOURS = "prefetchNeighbours";
+    private static final double MEMORY_PRESSURE_THRESHOLD = 0.75;
+    private static final String PREF_KEY_PARSE_CACHE = "parseCache";
+    private static final long MAX_TAB_FILE_SIZE = 256L << 20; // Larger files are left to the streaming command line
+    static final int ROW_BATCH_SIZE = 200; // Rows a loading tab hands to its table per EDT event
+    private final Preferences prefs;
+    private final IniCache parseCache = IniCache.inUserHome();
+    private final ProfileStore profiles = ProfileStore.inUserHome();
+    private final JLabel statusLabel = new JLabel(" ");
+    private FolderWatcher folderWatcher;
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final DocumentRegistry documents = new DocumentRegistry();
+    private final BackgroundExecutor background = new BackgroundExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    private SearchDialog searchDialog;
+    private DiagnosticsDialog diagnosticsDialog;
+
+    public INIEditor() {
+        setTitle("INI Editor");
+        setSize(800, 600);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        prefs = Preferences.userNodeForPackage(INIEditor.class);
+
+        tabbedPane = new JTabbedPane(JTabbedPane.TOP);
+        tabbedPane.addChangeListener(e -> materializeSelectedTab());
+        add(tabbedPane, BorderLayout.CENTER);
+        installMemoryPressureListener();
+        background.submitUntracked(new FutureTask<>(parseCache::prune), BackgroundExecutor.Priority.BACKGROUND);
+        if (Diagnostics.enabledAtStartup()) {
+            Diagnostics.installEdtMonitor();
+        }
+
+        JButton selectFolderButton = new JButton("Select Folder");
+        selectFolderButton.addActionListener(e -> selectFolderAndScan());
+
+        JButton saveAllButton = new JButton("Save All");
+        saveAllButton.addActionListener(e -> saveAllINIFiles());
+
+        JButton saveButton = new JButton("Save Current Tab");
+        saveButton.addActionListener(e -> saveCurrentTab());
+
+        JButton makeDefaultFolderButton = new JButton("Make Default Folder");
+        makeDefaultFolderButton.addActionListener(e -> makeDefaultFolder());
+
+        JButton recentFoldersButton = new JButton("Recent Folders");
+        recentFoldersButton.addActionListener(e -> showRecentFoldersDialog());
+
+        JButton searchButton = new JButton("Search");
+        searchButton.addActionListener(e -> showSearchDialog());
+        getRootPane().registerKeyboardAction(e -> showSearchDialog(), KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK),
+                JComponent.WHEN_IN_FOCUSED_WINDOW);
+
+        JButton changesButton = new JButton("Changes");
+        changesButton.addActionListener(e -> showPendingChangesDialog());
+        getRootPane().registerKeyboardAction(e -> undoEdit(), KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK),
+                JComponent.WHEN_IN_FOCUSED_WINDOW);
+        getRootPane().registerKeyboardAction(e -> redoEdit(), KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK),
+                JComponent.WHEN_IN_FOCUSED_WINDOW);
+        getRootPane().registerKeyboardAction(e -> redoEdit(),
+                KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), JComponent.WHEN_IN_FOCUSED_WINDOW);
+
+        JButton profilesButton = new JButton("Profiles");
+        profilesButton.addActionListener(e -> showProfilesDialog());
+
+        JButton compareButton = new JButton("Compare");
+        compareButton.addActionListener(e -> showCompareDialog());
+
+        JButton diagnosticsButton = new JButton("Diagnostics");
+        diagnosticsButton.addActionListener(e -> showDiagnosticsDialog());
+        getRootPane().registerKeyboardAction(e -> showDiagnosticsDialog(),
+                KeyStroke.getKeyStroke(KeyEvent.VK_D, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), JComponent.WHEN_IN_FOCUSED_WINDOW);
+
+        JCheckBox subfoldersCheckBox = new JCheckBox("Include Subfolders", prefs.getBoolean(PREF_KEY_SCAN_SUBFOLDERS, false));
+        subfoldersCheckBox.addActionListener(e -> prefs.putBoolean(PREF_KEY_SCAN_SUBFOLDERS, subfoldersCheckBox.isSelected()));
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(selectFolderButton);
+        buttonPanel.add(saveAllButton);
+        buttonPanel.add(saveButton);
+        buttonPanel.add(makeDefaultFolderButton);
+        buttonPanel.add(recentFoldersButton);
+        buttonPanel.add(searchButton);
+        buttonPanel.add(changesButton);
+        buttonPanel.add(compareButton);
+        buttonPanel.add(profilesButton);
+        buttonPanel.add(diagnosticsButton);
+        buttonPanel.add(subfoldersCheckBox);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(buttonPanel, BorderLayout.CENTER);
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(0, 5, 2, 5));
+        southPanel.add(statusLabel, BorderLayout.SOUTH);
+        add(southPanel, BorderLayout.SOUTH);
+
+        loadDefaultFolder();
+    }
+
+    private void makeDefaultFolder() {
+        if (lastSelectedFolder != null) {
+            prefs.put(PREF_KEY_DEFAULT_FOLDER, lastSelectedFolder.getAbsolutePath());
+            addRecentFolder(lastSelectedFolder.getAbsolutePath());
+            JOptionPane.showMessageDialog(this, "Default folder set to: " + lastSelectedFolder.getAbsolutePath(), "Success", JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(this, "No folder selected to set as default.", "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void loadDefaultFolder() {
+        String folderPath = prefs.get(PREF_KEY_DEFAULT_FOLDER, null);
+        if (folderPath != null) {
+            File folder = new File(folderPath);
+            if (folder.isDirectory()) {
+                lastSelectedFolder = folder;
+                scanFolder(folder);
+            }
+        }
+    }
+
+    private void addRecentFolder(String folderPath) {
+        Deque<String> recentFolders = new ArrayDeque<>(MAX_RECENT_FOLDERS);
+        String[] storedFolders = prefs.get(PREF_KEY_RECENT_FOLDERS, "").split(";");
+        for (String storedFolder : storedFolders) {
+            if (!storedFolder.isBlank() && !storedFolder.equals(folderPath)) {
+                recentFolders.add(storedFolder);
+            }
+        }
+        recentFolders.addFirst(folderPath);
+        while (recentFolders.size() > MAX_RECENT_FOLDERS) {
+            recentFolders.removeLast();
+        }
+        prefs.put(PREF_KEY_RECENT_FOLDERS, String.join(";", recentFolders));
+    }
+
+    private void showRecentFoldersDialog() {
+        String[] recentFolders = prefs.get(PREF_KEY_RECENT_FOLDERS, "").split(";");
+        if (recentFolders.length == 0 || recentFolders[0].isBlank()) {
+            JOptionPane.showMessageDialog(this, "No recent folders available.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        JDialog dialog = new JDialog(this, "Recent Folders", true);
+        dialog.setSize(400, 300);
+        dialog.setLayout(new BorderLayout());
+
+        DefaultListModel<String> listModel = new DefaultListModel<>();
+        for (String folder : recentFolders) {
+            listModel.addElement(folder);
+        }
+
+        JList<String> folderList = new JList<>(listModel);
+        folderList.setCellRenderer(new RecentFolderRenderer(folderList, listModel));
+        folderList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        folderList.addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                if (!e.getValueIsAdjusting()) {
+                    String selectedFolder = folderList.getSelectedValue();
+                    if (selectedFolder != null) {
+                        File folder = new File(selectedFolder);
+                        if (!folder.isDirectory()) {
+                            JOptionPane.showMessageDialog(INIEditor.this, "Selected folder does not exist.", "Error", JOptionPane.ERROR_MESSAGE);
+                        } else if (scanFolder(folder)) {
+                            lastSelectedFolder = folder;
+                            dialog.dispose();
+                        } else {
+                            folderList.clearSelection(); // The user kept the open tabs
+                        }
+                    }
+                }
+            }
+        });
+
+        JScrollPane scrollPane = new JScrollPane(folderList);
+        dialog.add(scrollPane, BorderLayout.CENTER);
+
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    private class RecentFolderRenderer extends JPanel implements ListCellRenderer<String> {
+        private final JLabel folderLabel;
+        private final JButton closeButton;
+        private final JList<String> folderList;
+        private final DefaultListModel<String> listModel;
+
+        public RecentFolderRenderer(JList<String> folderList, DefaultListModel<String> listModel) {
+            this.folderList = folderList;
+            this.listModel = listModel;
+            setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
+            folderLabel = new JLabel();
+            closeButton = new JButton("x");
+            closeButton.setOpaque(false);
+            closeButton.setContentAreaFilled(false);
+            closeButton.setBorderPainted(false);
+            closeButton.setFocusPainted(false);
+            closeButton.setMargin(new Insets(0, 5, 0, 0));
+            closeButton.setForeground(Color.BLACK);
+            closeButton.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    closeButton.setForeground(Color.RED);
+                }
+
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    closeButton.setForeground(Color.BLACK);
+                }
+            });
+            closeButton.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    int index = folderList.getSelectedIndex();
+                    if (index != -1) {
+                        listModel.remove(index);
+                        updateRecentFolders();
+                    }
+                }
+            });
+            add(folderLabel);
+            add(Box.createHorizontalGlue());
+            add(closeButton);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends String> list, String value, int index, boolean isSelected, boolean cellHasFocus) {
+            folderLabel.setText(value);
+            if (isSelected) {
+                setBackground(list.getSelectionBackground());
+                setForeground(list.getSelectionForeground());
+            } else {
+                setBackground(list.getBackground());
+                setForeground(list.getForeground());
+            }
+            return this;
+        }
+
+        private void updateRecentFolders() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < listModel.size(); i++) {
+                if (i > 0) {
+                    sb.append(";");
+                }
+                sb.append(listModel.get(i));
+            }
+            prefs.put(PREF_KEY_RECENT_FOLDERS, sb.toString());
+        }
+    }
+
+    /**
+     * Closes every tab, after asking whether to discard the unsaved edits of any. Returns false, and closes
+     * nothing, if the user keeps them.
+     */
+    private boolean clearTabs() {
+        List<String> unsaved = unsavedFiles();
+        if (!unsaved.isEmpty() && JOptionPane.showConfirmDialog(this, "Unsaved changes will be lost:\n" + String.join(", ", unsaved)
+                + "\nDiscard them?", "Unsaved Changes", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.YES_OPTION) {
+            return false;
+        }
+        background.newGeneration(); // Stop scans, loads and indexing still working on the old tabs
+        if (folderWatcher != null) {
+            folderWatcher.close();
+            folderWatcher = null;
+        }
+        documents.closeAll();
+        return true;
+    }
+
+    /** Closes {@code tab} from its close button, after asking whether to discard its unsaved edits. */
+    private void closeTab(IniTab tab) {
+        if (tab.model.isDirty() && JOptionPane.showConfirmDialog(this, "Discard the unsaved changes to " + tab.file.getName() + "?",
+                "Unsaved Changes", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.YES_OPTION) {
+            return;
+        }
+        documents.close(tab);
+    }
+
+    /** The selected tab once its file is loaded, with any cell edit in progress committed; otherwise null. */
+    private IniTab selectedLoadedTab() {
+        if (!(tabbedPane.getSelectedComponent() instanceof IniTab tab) || tab.table() == null || tab.model.document() == null) {
+            return null;
+        }
+        if (tab.table().isEditing() && !tab.table().getCellEditor().stopCellEditing()) {
+            tab.table().getCellEditor().cancelCellEditing(); // A value its type refuses is dropped, as on focus loss
+        }
+        return tab;
+    }
+
+    private void undoEdit() {
+        IniTab tab = selectedLoadedTab();
+        String label = tab != null ? tab.model.undo() : null;
+        statusLabel.setText(label != null ? "Undid " + label : "Nothing to undo");
+    }
+
+    private void redoEdit() {
+        IniTab tab = selectedLoadedTab();
+        String label = tab != null ? tab.model.redo() : null;
+        statusLabel.setText(label != null ? "Redid " + label : "Nothing to redo");
+    }
+
+    /**
+     * Lists the unsaved changes of the selected tab, with undo, redo and revert. Everything works on the
+     * tab's edit log in memory; nothing is re-read from disk.
+     */
+    private void showPendingChangesDialog() {
+        IniTab tab = selectedLoadedTab();
+        if (tab == null) {
+            JOptionPane.showMessageDialog(this, "No loaded file is selected.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JDialog dialog = new JDialog(this, "Pending Changes - " + tab.file.getName(), true);
+        dialog.setSize(600, 350);
+        dialog.setLayout(new BorderLayout());
+
+        List<EditLog.Change> changes = new ArrayList<>(tab.model.pendingChanges());
+        AbstractTableModel changesModel = new AbstractTableModel() {
+            private final String[] columnNames = {"Section", "Key", "Saved Value", "New Value"};
+
+            @Override
+            public int getRowCount() {
+                return changes.size();
+            }
+
+            @Override
+            public int getColumnCount() {
+                return columnNames.length;
+            }
+
+            @Override
+            public String getColumnName(int column) {
+                return columnNames[column];
+            }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                EditLog.Change change = changes.get(row);
+                return switch (column) {
+                    case 0 -> change.section();
+                    case 1 -> change.key();
+                    case 2 -> change.before();
+                    default -> change.after();
+                };
+            }
+        };
+        dialog.add(new JScrollPane(new JTable(changesModel)), BorderLayout.CENTER);
+
+        JButton undoButton = new JButton("Undo");
+        JButton redoButton = new JButton("Redo");
+        JButton revertButton = new JButton("Revert File");
+        Runnable refresh = () -> {
+            changes.clear();
+            changes.addAll(tab.model.pendingChanges());
+            changesModel.fireTableDataChanged();
+            undoButton.setEnabled(tab.model.canUndo());
+            redoButton.setEnabled(tab.model.canRedo());
+            revertButton.setEnabled(!changes.isEmpty());
+        };
+        undoButton.addActionListener(e -> {
+            undoEdit();
+            refresh.run();
+        });
+        redoButton.addActionListener(e -> {
+            redoEdit();
+            refresh.run();
+        });
+        revertButton.addActionListener(e -> {
+            statusLabel.setText("Reverted " + tab.model.revert() + " value(s) in " + tab.file.getName());
+            refresh.run();
+        });
+        refresh.run();
+
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(undoButton);
+        buttonPanel.add(redoButton);
+        buttonPanel.add(revertButton);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    private void showSearchDialog() {
+        if (searchDialog == null) {
+            searchDialog = new SearchDialog();
+        }
+        searchDialog.setVisible(true);
+        searchDialog.indexUnloadedFiles();
+        searchDialog.queryField.requestFocusInWindow();
+        searchDialog.queryField.selectAll();
+    }
+
+    /**
+     * Search across all open files. Results update as the user types; double-click or Enter jumps to the hit.
+     */
+    private class SearchDialog extends JDialog {
+        private static final int MAX_HITS = 1000;
+
+        private final JTextField queryField = new JTextField(30);
+        private final JComboBox<SearchIndex.Mode> modeComboBox = new JComboBox<>(SearchIndex.Mode.values());
+        private final JLabel resultLabel = new JLabel(" ");
+        private final List<SearchIndex.Hit> hits = new ArrayList<>();
+        private final AbstractTableModel hitsModel = new AbstractTableModel() {
+            private final String[] columnNames = {"File", "Section", "Key", "Value"};
+
+            @Override
+            public int getRowCount() {
+                return hits.size();
+            }
+
+            @Override
+            public int getColumnCount() {
+                return columnNames.length;
+            }
+
+            @Override
+            public String getColumnName(int column) {
+                return columnNames[column];
+            }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                SearchIndex.Hit hit = hits.get(row);
+                return switch (column) {
+                    case 0 -> hit.file().getName();
+                    case 1 -> hit.section();
+                    case 2 -> hit.key();
+                    default -> hit.value();
+                };
+            }
+        };
+        private final JTable hitsTable = new JTable(hitsModel);
+        private SwingWorker<Void, Void> indexer;
+
+        SearchDialog() {
+            super(INIEditor.this, "Search", false);
+            setSize(700, 400);
+            setLayout(new BorderLayout());
+
+            JPanel queryPanel = new JPanel();
+            queryPanel.add(queryField);
+            queryPanel.add(modeComboBox);
+            modeComboBox.setSelectedItem(SearchIndex.Mode.SUBSTRING);
+            add(queryPanel, BorderLayout.NORTH);
+            add(new JScrollPane(hitsTable), BorderLayout.CENTER);
+            resultLabel.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+            add(resultLabel, BorderLayout.SOUTH);
+
+            queryField.getDocument().addDocumentListener(new DocumentListener() {
+                @Override
+                public void insertUpdate(DocumentEvent e) {
+                    runQuery();
+                }
+
+                @Override
+                public void removeUpdate(DocumentEvent e) {
+                    runQuery();
+                }
+
+                @Override
+                public void changedUpdate(DocumentEvent e) {
+                    runQuery();
+                }
+            });
+            modeComboBox.addActionListener(e -> runQuery());
+            queryField.addActionListener(e -> openHit(hits.isEmpty() ? -1 : Math.max(0, hitsTable.getSelectedRow())));
+            hitsTable.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    if (e.getClickCount() == 2) {
+                        openHit(hitsTable.getSelectedRow());
+                    }
+                }
+            });
+            hitsTable.registerKeyboardAction(e -> openHit(hitsTable.getSelectedRow()), KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0),
+                    JComponent.WHEN_FOCUSED);
+            setLocationRelativeTo(INIEditor.this);
+        }
+
+        /** Parses the files whose tabs were never opened, so the search covers the whole folder. */
+        void indexUnloadedFiles() {
+            if (indexer != null && !indexer.isDone()) {
+                return;
+            }
+            List<File> files = new ArrayList<>();
+            for (IniTab tab : documents.all()) {
+                if (!searchIndex.contains(tab.file)) {
+                    files.add(tab.file);
+                }
+            }
+            if (files.isEmpty()) {
+                return;
+            }
+            IniCache cache = prefs.getBoolean(PREF_KEY_PARSE_CACHE, true) ? parseCache : null;
+            indexer = new SwingWorker<>() {
+                @Override
+                protected Void doInBackground() throws IOException {
+                    background.lane(BackgroundExecutor.Priority.BACKGROUND, true).map(files, file -> {
+                        if (isCancelled()) {
+                            return null;
+                        }
+                        try {
+                            searchIndex.put(IniDocument.load(file, cache));
+                        } catch (IOException e) {
+                            // Unreadable files are left out of the search
+                        }
+                        return null;
+                    });
+                    return null;
+                }
+
+                @Override
+                protected void done() {
+                    if (isCancelled()) {
+                        resultLabel.setText(" ");
+                        return;
+                    }
+                    for (File file : files) {
+                        if (documents.get(file) == null) {
+                            searchIndex.remove(file); // Closed while it was being indexed
+                        }
+                    }
+                    runQuery();
+                }
+            };
+            resultLabel.setText("Indexing " + files.size() + " file(s)...");
+            background.submit(indexer, BackgroundExecutor.Priority.BACKGROUND);
+        }
+
+        private void runQuery() {
+            String query = queryField.getText();
+            hits.clear();
+            if (!query.isEmpty()) {
+                long start = System.nanoTime();
+                try {
+                    hits.addAll(searchIndex.search(query, (SearchIndex.Mode) modeComboBox.getSelectedItem(), MAX_HITS));
+                    resultLabel.setText(String.format("%d hit(s)%s in %.1f ms", hits.size(), hits.size() == MAX_HITS ? " (limit reached)" : "",
+                            (System.nanoTime() - start) / 1e6));
+                } catch (PatternSyntaxException e) {
+                    resultLabel.setText("Invalid regular expression: " + e.getDescription());
+                }
+            } else {
+                resultLabel.setText(" ");
+            }
+            hitsModel.fireTableDataChanged();
+        }
+
+        private void openHit(int row) {
+            if (row < 0 || row >= hits.size()) {
+                return;
+            }
+            SearchIndex.Hit hit = hits.get(row);
+            IniTab tab = documents.get(hit.file());
+            if (tab != null) {
+                tabbedPane.setSelectedComponent(tab);
+                tab.reveal(hit.line());
+            }
+        }
+    }
+
+    /** Asks for two files or two folders and shows how they differ. */
+    private void showCompareDialog() {
+        File left = chooseCompareTarget("Compare: first file or folder", lastSelectedFolder);
+        File right = left != null ? chooseCompareTarget("Compare " + left.getName() + " with", left.getParentFile()) : null;
+        if (right == null) {
+            return;
+        }
+        ScanOptions options = scanOptions();
+        statusLabel.setText("Comparing " + left.getName() + " with " + right.getName() + "...");
+        background.submitUntracked(new SwingWorker<IniDiff.Result, Void>() {
+            @Override
+            protected IniDiff.Result doInBackground() throws Exception {
+                return IniDiff.compare(left, right, options, background.lane(BackgroundExecutor.Priority.INTERACTIVE, false));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    IniDiff.Result result = get();
+                    statusLabel.setText(String.format("Compared %d file(s) in %d ms", result.filesCompared(), result.elapsedNanos() / 1_000_000));
+                    new DiffDialog(left, right, result).setVisible(true);
+                } catch (InterruptedException | ExecutionException e) {
+                    statusLabel.setText(" ");
+                    String message = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                    JOptionPane.showMessageDialog(INIEditor.this, "Error comparing: " + message, "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }, BackgroundExecutor.Priority.INTERACTIVE);
+    }
+
+    private File chooseCompareTarget(String title, File start) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        fileChooser.setDialogTitle(title);
+        if (start != null) {
+            fileChooser.setCurrentDirectory(start);
+        }
+        return fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION ? fileChooser.getSelectedFile() : null;
+    }
+
+    /**
+     * Side-by-side view of a comparison: one row per added, removed or changed key, with the value on each
+     * side, tinted by kind.
+     */
+    private class DiffDialog extends JDialog {
+        private static final Color ADDED_BACKGROUND = new Color(210, 245, 210);
+        private static final Color REMOVED_BACKGROUND = new Color(250, 215, 215);
+        private static final Color CHANGED_BACKGROUND = new Color(255, 245, 200);
+
+        DiffDialog(File left, File right, IniDiff.Result result) {
+            super(INIEditor.this, "Compare " + left.getName() + " / " + right.getName(), false);
+            setSize(900, 500);
+            setLayout(new BorderLayout());
+
+            List<IniDiff.Difference> differences = result.differences();
+            String[] columnNames = {"File", "Section", "Key", left.getName(), right.getName()};
+            AbstractTableModel differencesModel = new AbstractTableModel() {
+                @Override
+                public int getRowCount() {
+                    return differences.size();
+                }
+
+                @Override
+                public int getColumnCount() {
+                    return columnNames.length;
+                }
+
+                @Override
+                public String getColumnName(int column) {
+                    return columnNames[column];
+                }
+
+                @Override
+                public Object getValueAt(int row, int column) {
+                    IniDiff.Difference difference = differences.get(row);
+                    return switch (column) {
+                        case 0 -> difference.file();
+                        case 1 -> difference.isFile() ? "(whole file)" : difference.section();
+                        case 2 -> difference.isFile() ? "" : difference.key();
+                        case 3 -> difference.left() != null ? difference.left() : "";
+                        default -> difference.right() != null ? difference.right() : "";
+                    };
+                }
+            };
+            JTable table = new JTable(differencesModel);
+            table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+                @Override
+                public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+                    super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+                    if (!isSelected) {
+                        setBackground(switch (differences.get(row).kind()) {
+                            case ADDED -> ADDED_BACKGROUND;
+                            case REMOVED -> REMOVED_BACKGROUND;
+                            case CHANGED -> CHANGED_BACKGROUND;
+                        });
+                    }
+                    return this;
+                }
+            });
+            if (left.isFile()) {
+                table.removeColumn(table.getColumnModel().getColumn(0)); // Only one file
+            }
+            add(new JScrollPane(table), BorderLayout.CENTER);
+
+            Map<IniDiff.Kind, Integer> counts = new EnumMap<>(IniDiff.Kind.class);
+            for (IniDiff.Difference difference : differences) {
+                counts.merge(difference.kind(), 1, Integer::sum);
+            }
+            JLabel summaryLabel = new JLabel(String.format("%d file(s) compared in %d ms: %d added, %d removed, %d changed",
+                    result.filesCompared(), result.elapsedNanos() / 1_000_000, counts.getOrDefault(IniDiff.Kind.ADDED, 0),
+                    counts.getOrDefault(IniDiff.Kind.REMOVED, 0), counts.getOrDefault(IniDiff.Kind.CHANGED, 0)));
+            summaryLabel.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+            add(summaryLabel, BorderLayout.SOUTH);
+            setLocationRelativeTo(INIEditor.this);
+        }
+    }
+
+    /** Lists the saved profiles, to snapshot the current folder into a new one or apply one to it. */
+    private void showProfilesDialog() {
+        if (lastSelectedFolder == null) {
+            JOptionPane.showMessageDialog(this, "Select a folder first.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JDialog dialog = new JDialog(this, "Profiles - " + lastSelectedFolder.getName(), true);
+        dialog.setSize(400, 300);
+        dialog.setLayout(new BorderLayout());
+
+        DefaultListModel<String> listModel = new DefaultListModel<>();
+        Runnable refresh = () -> {
+            listModel.clear();
+            try {
+                profiles.names().forEach(listModel::addElement);
+            } catch (IOException e) {
+                statusLabel.setText("Could not list profiles: " + e.getMessage());
+            }
+        };
+        refresh.run();
+        JList<String> profileList = new JList<>(listModel);
+        profileList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        dialog.add(new JScrollPane(profileList), BorderLayout.CENTER);
+
+        JButton snapshotButton = new JButton("Snapshot...");
+        snapshotButton.addActionListener(e -> {
+            String name = JOptionPane.showInputDialog(dialog, "Save the values of every INI in " + lastSelectedFolder.getName() + " as:",
+                    "New Profile", JOptionPane.PLAIN_MESSAGE);
+            if (name == null) {
+                return;
+            }
+            name = name.trim();
+            if (!ProfileStore.isValidName(name)) {
+                JOptionPane.showMessageDialog(dialog, "Use letters, digits, spaces, '.', '-' or '_' (up to 64).", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            snapshotProfile(name, refresh);
+        });
+        JButton applyButton = new JButton("Apply");
+        applyButton.addActionListener(e -> {
+            String name = profileList.getSelectedValue();
+            if (name != null) {
+                applyProfile(name);
+                dialog.dispose();
+            }
+        });
+        JButton deleteButton = new JButton("Delete");
+        deleteButton.addActionListener(e -> {
+            String name = profileList.getSelectedValue();
+            if (name != null && JOptionPane.showConfirmDialog(dialog, "Delete profile " + name + "?", "Delete Profile",
+                    JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                try {
+                    profiles.delete(name);
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(dialog, "Error deleting profile: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+                refresh.run();
+            }
+        });
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(snapshotButton);
+        buttonPanel.add(applyButton);
+        buttonPanel.add(deleteButton);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    /** Files of the open folder whose tabs hold unsaved edits, which a profile must not silently overwrite. */
+    private List<String> unsavedFiles() {
+        List<String> names = new ArrayList<>();
+        for (IniTab tab : documents.all()) {
+            if (tab.model.isDirty()) {
+                names.add(tab.file.getName());
+            }
+        }
+        return names;
+    }
+
+    private void snapshotProfile(String name, Runnable whenSaved) {
+        List<String> unsaved = unsavedFiles();
+        if (!unsaved.isEmpty() && JOptionPane.showConfirmDialog(this, "Unsaved changes are not part of the snapshot:\n"
+                + String.join(", ", unsaved) + "\nContinue?", "Unsaved Changes", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+            return;
+        }
+        Path folder = lastSelectedFolder.toPath();
+        List<File> files = new ArrayList<>();
+        for (IniTab tab : documents.all()) {
+            files.add(tab.file);
+        }
+        background.submitUntracked(new SwingWorker<ProfileStore.Profile, Void>() {
+            private final long start = System.nanoTime();
+
+            @Override
+            protected ProfileStore.Profile doInBackground() throws Exception {
+                return profiles.snapshot(name, folder, files, background.lane(BackgroundExecutor.Priority.INTERACTIVE, false));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    ProfileStore.Profile profile = get();
+                    statusLabel.setText(String.format("Saved profile %s: %d values from %d file(s) in %d ms", name,
+                            profile.settings().size(), files.size(), (System.nanoTime() - start) / 1_000_000));
+                    whenSaved.run();
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(INIEditor.this, "Error saving profile: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }, BackgroundExecutor.Priority.INTERACTIVE);
+    }
+
+    private void applyProfile(String name) {
+        List<String> unsaved = unsavedFiles();
+        if (!unsaved.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Save or revert the unsaved changes first:\n" + String.join(", ", unsaved),
+                    "Unsaved Changes", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        Path folder = lastSelectedFolder.toPath();
+        int backups = backupCount();
+        statusLabel.setText("Applying profile " + name + "...");
+        background.submitUntracked(new SwingWorker<ProfileStore.ApplyResult, Void>() {
+            @Override
+            protected ProfileStore.ApplyResult doInBackground() throws Exception {
+                return ProfileStore.apply(profiles.load(name), folder, backups, background.lane(BackgroundExecutor.Priority.INTERACTIVE, false));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    ProfileStore.ApplyResult result = get();
+                    for (IniTab tab : documents.all()) {
+                        tab.reloadIfChanged();
+                    }
+                    String summary = String.format("Applied profile %s: %d value(s) changed in %d file(s) in %d ms", name,
+                            result.valuesChanged(), result.filesChanged(), result.elapsedNanos() / 1_000_000);
+                    statusLabel.setText(summary);
+                    if (!result.missing().isEmpty()) {
+                        int shown = Math.min(result.missing().size(), 20);
+                        JOptionPane.showMessageDialog(INIEditor.this, summary + "\n\nNot found in this folder:\n"
+                                + String.join("\n", result.missing().subList(0, shown))
+                                + (shown < result.missing().size() ? "\n... and " + (result.missing().size() - shown) + " more" : ""),
+                                "Profile Applied", JOptionPane.WARNING_MESSAGE);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    statusLabel.setText(" ");
+                    String message = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                    JOptionPane.showMessageDialog(INIEditor.this, "Profile not applied, no file was changed: " + message, "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }, BackgroundExecutor.Priority.INTERACTIVE);
+    }
+
+    private void showDiagnosticsDialog() {
+        if (diagnosticsDialog == null) {
+            Diagnostics.installEdtMonitor(); // EDT figures are collected from the first time they are looked at
+            diagnosticsDialog = new DiagnosticsDialog();
+        }
+        diagnosticsDialog.setVisible(true);
+    }
+
+    /**
+     * Live view of {@link Diagnostics}, refreshed every second while it is open, with a session report export.
+     */
+    private class DiagnosticsDialog extends JDialog {
+        private final Diagnostics.Metric[] metrics = Diagnostics.Metric.values();
+        private final AbstractTableModel metricsModel = new AbstractTableModel() {
+            @Override
+            public int getRowCount() {
+                return metrics.length;
+            }
+
+            @Override
+            public int getColumnCount() {
+                return 2;
+            }
+
+            @Override
+            public String getColumnName(int column) {
+                return column == 0 ? "Metric" : "Value";
+            }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                Diagnostics.Metric metric = metrics[row];
+                return column == 0 ? metric.label : metric.format(Diagnostics.get(metric));
+            }
+        };
+        private final Timer refreshTimer = new Timer(1000, e -> metricsModel.fireTableRowsUpdated(0, metrics.length - 1));
+
+        DiagnosticsDialog() {
+            super(INIEditor.this, "Diagnostics", false);
+            setSize(420, 520);
+            setLayout(new BorderLayout());
+            add(new JScrollPane(new JTable(metricsModel)), BorderLayout.CENTER);
+
+            JButton resetButton = new JButton("Reset");
+            resetButton.addActionListener(e -> {
+                Diagnostics.reset();
+                metricsModel.fireTableRowsUpdated(0, metrics.length - 1);
+            });
+            JButton exportButton = new JButton("Export Report...");
+            exportButton.addActionListener(e -> exportReport());
+            JPanel buttonPanel = new JPanel();
+            buttonPanel.add(resetButton);
+            buttonPanel.add(exportButton);
+            add(buttonPanel, BorderLayout.SOUTH);
+
+            addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentShown(ComponentEvent e) {
+                    metricsModel.fireTableRowsUpdated(0, metrics.length - 1);
+                    refreshTimer.start();
+                }
+
+                @Override
+                public void componentHidden(ComponentEvent e) {
+                    refreshTimer.stop();
+                }
+            });
+            setLocationRelativeTo(INIEditor.this);
+        }
+
+        private void exportReport() {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setSelectedFile(new File("inieditor-report.txt"));
+            if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                Files.writeString(fileChooser.getSelectedFile().toPath(), Diagnostics.report(), Charset.defaultCharset());
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Error writing report: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    private void watchFolder(File folder, ScanOptions options) {
+        if (folderWatcher != null) {
+            folderWatcher.close();
+        }
+        try {
+            folderWatcher = new FolderWatcher(folder.toPath(), options);
+            folderWatcher.start();
+        } catch (IOException e) {
+            folderWatcher = null;
+            statusLabel.setText("Not watching " + folder.getAbsolutePath() + " for changes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies a debounced batch of file system changes: new INI files get a tab, deleted ones lose theirs
+     * (unless they hold unsaved edits), and open tabs whose file changed are reloaded and merged.
+     */
+    private void applyFileChanges(Path root, Set<Path> changed, boolean overflow) {
+        if (folderWatcher == null || !folderWatcher.root.equals(root)) {
+            return; // A different folder was opened meanwhile
+        }
+        for (Path path : changed) {
+            File file = path.toFile();
+            String name = root.relativize(path).toString();
+            IniTab tab = documents.get(file);
+            if (Files.isRegularFile(path)) {
+                if (tab == null) {
+                    documents.open(file, name);
+                } else {
+                    tab.reloadIfChanged();
+                }
+            } else if (tab != null) {
+                if (tab.model.isDirty()) {
+                    statusLabel.setText(name + " was deleted on disk; its tab is kept because it has unsaved changes");
+                } else {
+                    documents.close(tab);
+                }
+            }
+        }
+        if (overflow) {
+            // Events were lost, so check every open file against its stamp
+            for (IniTab tab : documents.all()) {
+                tab.reloadIfChanged();
+            }
+        }
+    }
+
+    /**
+     * Watches the scanned folder (and, for recursive scans, its subfolders within the scan depth) on a daemon
+     * thread. Events are collected until the folder has been quiet for {@link #DEBOUNCE_MILLIS}, so an
+     * installer rewriting a file in several steps causes one reload, and are then handed to the EDT.
+     */
+    private class FolderWatcher {
+        private static final long DEBOUNCE_MILLIS = 300;
+
+        private final Path root;
+        private final ScanOptions options;
+        private final List<PathMatcher> excludes;
+        private final WatchService watchService;
+        private final Map<WatchKey, Path> directories = new HashMap<>();
+
+        FolderWatcher(Path root, ScanOptions options) throws IOException {
+            this.root = root;
+            this.options = options;
+            this.excludes = options.excludeMatchers();
+            this.watchService = root.getFileSystem().newWatchService();
+            register(root);
+        }
+
+        private void register(Path directory) throws IOException {
+            // Folders are pre-visited only above the walk's depth limit, hence the + 1
+            Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), options.maxDepth() - depthOf(directory) + 1,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                            if (!dir.equals(root) && ScanOptions.isExcluded(excludes, root, dir)) {
+                                return FileVisitResult.SKIP_SUBTREE;
+                            }
+                            directories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException e) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        }
+
+        private int depthOf(Path directory) {
+            return directory.equals(root) ? 0 : root.relativize(directory).getNameCount();
+        }
+
+        void start() {
+            Thread thread = new Thread(this::run, "INI folder watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void close() {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+
+        private void run() {
+            Set<Path> changed = new LinkedHashSet<>();
+            boolean overflow = false;
+            try {
+                while (true) {
+                    WatchKey key = changed.isEmpty() && !overflow
+                            ? watchService.take()
+                            : watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        Set<Path> batch = changed;
+                        boolean lostEvents = overflow;
+                        SwingUtilities.invokeLater(() -> applyFileChanges(root, batch, lostEvents));
+                        changed = new LinkedHashSet<>();
+                        overflow = false;
+                        continue;
+                    }
+                    Path directory = directories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                            continue;
+                        }
+                        Path path = directory.resolve((Path) event.context());
+                        if (path.getFileName().toString().toLowerCase().endsWith(".ini")) {
+                            changed.add(path);
+                        } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)
+                                && depthOf(path) <= options.maxDepth()) {
+                            try {
+                                register(path);
+                            } catch (IOException e) {
+                                // The folder vanished again or cannot be watched
+                            }
+                        }
+                    }
+                    if (!key.reset()) {
+                        directories.remove(key);
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Watcher closed because another folder was opened
+            }
+        }
+    }
+
+    /**
+     * Scan settings from the preferences. Depth and excludes only matter with "Include Subfolders"; excludes
+     * are ';'-separated globs matched against folder names and paths relative to the scanned folder.
+     */
+    private ScanOptions scanOptions() {
+        if (!prefs.getBoolean(PREF_KEY_SCAN_SUBFOLDERS, false)) {
+            return ScanOptions.TOP_LEVEL;
+        }
+        List<String> excludes = new ArrayList<>();
+        for (String glob : prefs.get(PREF_KEY_SCAN_EXCLUDES, DEFAULT_SCAN_EXCLUDES).split(";")) {
+            if (!glob.isBlank()) {
+                excludes.add(glob.trim());
+            }
+        }
+        return new ScanOptions(Math.max(0, prefs.getInt(PREF_KEY_SCAN_MAX_DEPTH, DEFAULT_SCAN_MAX_DEPTH)), excludes);
+    }
+
+    private void selectFolderAndScan() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (lastSelectedFolder != null) {
+            fileChooser.setCurrentDirectory(lastSelectedFolder); // Set the last selected folder
+        }
+        int result = fileChooser.showOpenDialog(this);
+        if (result == JFileChooser.APPROVE_OPTION) {
+            File folder = fileChooser.getSelectedFile();
+            if (scanFolder(folder)) {
+                lastSelectedFolder = folder; // Remember the selected folder
+                addRecentFolder(folder.getAbsolutePath()); // Add to recent folders
+            }
+        }
+    }
+
+    /** Replaces the tabs with the INI files of {@code folder}; false if the user kept tabs with unsaved edits. */
+    private boolean scanFolder(File folder) {
+        if (!clearTabs()) {
+            return false;
+        }
+        background.submit(new ScanFolderWorker(folder, tabbedPane, this, scanOptions()), BackgroundExecutor.Priority.INTERACTIVE);
+        return true;
+    }
+
+    /** How far below the selected folder to look for INI files, and which folders to skip. */
+    record ScanOptions(int maxDepth, List<String> excludeGlobs) {
+        static final ScanOptions TOP_LEVEL = new ScanOptions(0, List.of());
+
+        ScanOptions {
+            excludeGlobs = List.copyOf(excludeGlobs);
+        }
+
+        /** Compiles the exclude globs; done once per scan or watch rather than per folder. */
+        List<PathMatcher> excludeMatchers() {
+            List<PathMatcher> matchers = new ArrayList<>();
+            for (String glob : excludeGlobs) {
+                matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+            }
+            return matchers;
+        }
+
+        /** Whether {@code directory}, found below {@code root}, matches one of {@code matchers}. */
+        static boolean isExcluded(List<PathMatcher> matchers, Path root, Path directory) {
+            Path relative = root.relativize(directory);
+            for (PathMatcher matcher : matchers) {
+                if (matcher.matches(relative) || matcher.matches(directory.getFileName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The pool all background work runs on instead of SwingWorker's shared default executor: folder scans,
+     * file loads and reloads, search indexing, saves, compares and profiles. It has one thread per core, runs
+     * interactive work (the visible tab, saves) ahead of background work (prefetched neighbours, reloads,
+     * indexing), and cancels the tracked work of a folder when {@link #newGeneration()} is called for the
+     * next one. Jobs that split into parts, such as a folder compare, run the parts through a {@link Lane},
+     * so the parts are queued, prioritized and cancelled like the job itself.
+     */
+    static final class BackgroundExecutor {
+        enum Priority { INTERACTIVE, BACKGROUND }
+
+        /** One part of a split-up job. */
+        interface Task<T, R> {
+            R apply(T item) throws IOException;
+        }
+
+        /** Runs the parts of a job on {@code executor} at {@code priority}; tracked parts are cancelled with their folder. */
+        record Lane(BackgroundExecutor executor, Priority priority, boolean tracked) {
+            /**
+             * Runs {@code task} for each item on the pool and returns the results in item order. While waiting,
+             * the caller runs the parts no pool thread has started yet, so a job that is itself on the pool cannot
+             * starve it. The first failure is rethrown and the remaining parts are cancelled; a part cancelled by
+             * {@link #newGeneration()} surfaces as a {@code CancellationException}.
+             */
+            <T, R> List<R> map(Collection<? extends T> items, Task<T, R> task) throws IOException {
+                List<FutureTask<R>> parts = new ArrayList<>(items.size());
+                for (T item : items) {
+                    FutureTask<R> part = new FutureTask<>(() -> task.apply(item));
+                    parts.add(tracked ? executor.submit(part, priority) : executor.submitUntracked(part, priority));
+                }
+                List<R> results = new ArrayList<>(parts.size());
+                try {
+                    for (FutureTask<R> part : parts) {
+                        part.run(); // A no-op if a pool thread got to it first
+                        results.add(part.get());
+                    }
+                    return results;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted");
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    if (e.getCause() instanceof RuntimeException runtime) {
+                        throw runtime;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                } finally {
+                    for (FutureTask<R> part : parts) {
+                        part.cancel(true); // Only stops parts left over after a failure
+                    }
+                }
+            }
+        }
+
+        /** Queue entry; interactive first, then first come first served. */
+        private record Queued(Priority priority, long sequence, RunnableFuture<?> work, boolean tracked)
+                implements Runnable, Comparable<Queued> {
+            @Override
+            public int compareTo(Queued other) {
+                int byPriority = priority.compareTo(other.priority);
+                return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+            }
+
+            @Override
+            public void run() {
+                work.run(); // A no-op if the work was cancelled or already ran from another entry
+            }
+        }
+
+        private final ThreadPoolExecutor pool;
+        private final AtomicLong sequence = new AtomicLong();
+        private final Set<RunnableFuture<?>> generation = ConcurrentHashMap.newKeySet(); // Tracked work not yet finished
+
+        BackgroundExecutor(int threads) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "INI background " + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }) {
+                @Override
+                protected void afterExecute(Runnable runnable, Throwable failure) {
+                    if (runnable instanceof Queued queued && queued.tracked() && queued.work().isDone()) {
+                        generation.remove(queued.work());
+                    }
+                }
+            };
+            pool.allowCoreThreadTimeOut(true);
+        }
+
+        /** Queues work that belongs to the current folder and is cancelled when the folder changes. */
+        <W extends RunnableFuture<?>> W submit(W work, Priority priority) {
+            generation.add(work);
+            pool.execute(new Queued(priority, sequence.getAndIncrement(), work, true));
+            return work;
+        }
+
+        /** Queues work that must finish even if the folder changes, such as a save. */
+        <W extends RunnableFuture<?>> W submitUntracked(W work, Priority priority) {
+            pool.execute(new Queued(priority, sequence.getAndIncrement(), work, false));
+            return work;
+        }
+
+        Lane lane(Priority priority, boolean tracked) {
+            return new Lane(this, priority, tracked);
+        }
+
+        /** Queues not yet started work again at interactive priority; whichever entry runs first does it. */
+        void prioritize(RunnableFuture<?> work) {
+            if (!work.isDone()) {
+                pool.execute(new Queued(Priority.INTERACTIVE, sequence.getAndIncrement(), work, generation.contains(work)));
+            }
+        }
+
+        /** Cancels all tracked work, queued or running, so it cannot touch the tabs of the next folder. */
+        void newGeneration() {
+            for (RunnableFuture<?> work : generation) {
+                work.cancel(true);
+            }
+            generation.clear();
+        }
+    }
+
+    /**
+     * Finds the INI files of a folder tree. The folders of each level are listed in parallel on the background
+     * pool, so large game installs are walked in parallel, and every file is handed to {@code found} as soon as
+     * it is seen.
+     */
+    static final class FolderScan {
+        private final Path root;
+        private final ScanOptions options;
+        private final List<PathMatcher> excludes;
+        private final Consumer<File> found;
+        private final BooleanSupplier cancelled;
+        private final AtomicInteger foldersScanned = new AtomicInteger();
+        private final AtomicInteger filesFound = new AtomicInteger();
+
+        FolderScan(Path root, ScanOptions options, Consumer<File> found, BooleanSupplier cancelled) {
+            this.root = root;
+            this.options = options;
+            this.excludes = options.excludeMatchers();
+            this.found = found;
+            this.cancelled = cancelled;
+        }
+
+        int foldersScanned() {
+            return foldersScanned.get();
+        }
+
+        int filesFound() {
+            return filesFound.get();
+        }
+
+        /** Walks the tree a level at a time, listing the folders of a level as parts on {@code lane}. */
+        FolderScan run(BackgroundExecutor.Lane lane) throws IOException {
+            List<Path> level = List.of(root);
+            for (int depth = 0; !level.isEmpty() && !cancelled.getAsBoolean(); depth++) {
+                boolean descend = depth < options.maxDepth();
+                List<List<Path>> subfolders = lane.map(level, directory -> list(directory, descend));
+                level = subfolders.stream().flatMap(List::stream).toList();
+            }
+            return this;
+        }
+
+        /** Hands the INI files in {@code directory} to {@code found} and returns the subfolders to scan next. */
+        private List<Path> list(Path directory, boolean descend) {
+            List<Path> subfolders = new ArrayList<>();
+            if (cancelled.getAsBoolean()) {
+                return subfolders;
+            }
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        if (descend && !ScanOptions.isExcluded(excludes, root, entry)) {
+                            subfolders.add(entry);
+                        }
+                    } else if (attributes.isRegularFile() && entry.getFileName().toString().toLowerCase().endsWith(".ini")) {
+                        filesFound.incrementAndGet();
+                        found.accept(entry.toFile());
+                    }
+                }
+            } catch (IOException e) {
+                // Unreadable folders are skipped, like listFiles() returning null
+            }
+            foldersScanned.incrementAndGet();
+            return subfolders;
+        }
+    }
+
+    /** Runs a {@link FolderScan} off the EDT and streams the files it finds into new tabs. */
+    private static class ScanFolderWorker extends SwingWorker<Void, File> {
+        private final File folder;
+        private final JTabbedPane tabbedPane;
+        private final INIEditor editor;
+        private final ScanOptions options;
+        private final FolderScan scan;
+        private final long startNanos = System.nanoTime();
+
+        public ScanFolderWorker(File folder, JTabbedPane tabbedPane, INIEditor editor, ScanOptions options) {
+            this.folder = folder;
+            this.tabbedPane = tabbedPane;
+            this.editor = editor;
+            this.options = options;
+            this.scan = new FolderScan(folder.toPath(), options, file -> publish(file), this::isCancelled);
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            Diagnostics.ScanEvent event = new Diagnostics.ScanEvent();
+            event.begin();
+            scan.run(editor.background.lane(BackgroundExecutor.Priority.INTERACTIVE, true));
+            event.end();
+            Diagnostics.record(Diagnostics.Metric.SCAN_TIME, System.nanoTime() - startNanos);
+            Diagnostics.record(Diagnostics.Metric.FOLDERS_SCANNED, scan.foldersScanned());
+            Diagnostics.record(Diagnostics.Metric.INI_FILES_FOUND, scan.filesFound());
+            event.folder = folder.getAbsolutePath();
+            event.folders = scan.foldersScanned();
+            event.files = scan.filesFound();
+            event.commit();
+            return null;
+        }
+
+        @Override
+        protected void process(List<File> chunks) {
+            if (isCancelled()) {
+                return;
+            }
+            for (File file : chunks) {
+                String name = folder.toPath().relativize(file.toPath()).toString();
+                editor.documents.open(file, name);
+            }
+            editor.statusLabel.setText(String.format("Scanning %s: %d folders, %d INI files found...",
+                    folder.getAbsolutePath(), scan.foldersScanned(), scan.filesFound()));
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return; // Another folder was chosen; its scan owns the tabs and status now
+            }
+            tabbedPane.revalidate();
+            long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            editor.statusLabel.setText(String.format("%s: %d INI files in %d folders (%d ms)",
+                    folder.getAbsolutePath(), scan.filesFound(), scan.foldersScanned(), elapsedMillis));
+            editor.watchFolder(folder, options);
+        }
+    }
+
+    /**
+     * The open files, keyed by canonical path. Each entry is the file's tab, which owns its model (values,
+     * dirty state and edit log), its table and its loader. Closing a document here removes the tab, stops its
+     * load and drops everything it held, including its search index entries.
+     */
+    private class DocumentRegistry {
+        private final Map<Path, IniTab> tabs = new LinkedHashMap<>();
+
+        /** Returns the tab of {@code file}, adding one titled {@code title} if the file is not open yet. */
+        IniTab open(File file, String title) {
+            Path key = key(file);
+            IniTab tab = tabs.get(key);
+            if (tab == null) {
+                tab = new IniTab(file, key);
+                tabs.put(key, tab);
+                tabbedPane.addTab(title, tab);
+                IniTab added = tab;
+                tabbedPane.setTabComponentAt(tabbedPane.getTabCount() - 1, createTabComponent(title, tab.model, () -> closeTab(added)));
+                Diagnostics.record(Diagnostics.Metric.TABS_CREATED, 1);
+            }
+            return tab;
+        }
+
+        /** The tab of {@code file}, or null if it is not open. */
+        IniTab get(File file) {
+            return tabs.get(key(file));
+        }
+
+        /** The open tabs, in the order they were opened. */
+        Collection<IniTab> all() {
+            return Collections.unmodifiableCollection(tabs.values());
+        }
+
+        /** Closes {@code tab} and drops its unsaved edits without asking; callers confirm first if it is dirty. */
+        void close(IniTab tab) {
+            if (tabs.remove(tab.key) != null) {
+                tab.dispose();
+                tabbedPane.remove(tab);
+                searchIndex.remove(tab.file);
+            }
+        }
+
+        /** Closes every document at once, unsaved edits included, without selecting (and loading) each next tab on the way. */
+        void closeAll() {
+            for (IniTab tab : tabs.values()) {
+                tab.dispose();
+            }
+            tabs.clear();
+            tabbedPane.removeAll();
+            searchIndex.clear();
+        }
+
+        /** The canonical path, so links and differently spelled paths to one file share a tab. */
+        private Path key(File file) {
+            try {
+                return file.getCanonicalFile().toPath();
+            } catch (IOException e) {
+                return file.toPath().toAbsolutePath().normalize();
+            }
+        }
+    }
+
+    /**
+     * Content of one file's tab. It starts out as an empty placeholder: the table is built and the file parsed
+     * only when the tab is first shown, and an unmodified tab can be released again to give back its memory.
+     */
+    private class IniTab extends JPanel {
+        private final File file;
+        private final Path key; // Canonical path, the tab's identity in the document registry
+        private final IniTableModel model = new IniTableModel();
+        private JTable table;
+        private LoadINIFileWorker loader;
+
+        private int pendingReveal = -1;
+
+        IniTab(File file, Path key) {
+            super(new BorderLayout());
+            this.file = file;
+            this.key = key;
+            model.addTableModelListener(e -> {
+                if (model.document() == null) {
+                    return;
+                }
+                if (e.getType() == TableModelEvent.UPDATE && e.getColumn() == IniTableModel.VALUE_COLUMN && e.getFirstRow() == e.getLastRow()) {
+                    searchIndex.updateValue(file, model.lineAt(e.getFirstRow()).number(), model.valueAt(e.getFirstRow()));
+                } else if (e.getLastRow() == Integer.MAX_VALUE) {
+                    // Rows were replaced by a merge; the index has the reloaded file, re-apply the kept edits
+                    for (IniDocument.Edit edit : model.pendingEdits()) {
+                        searchIndex.updateValue(file, edit.line(), edit.value());
+                    }
+                }
+            });
+        }
+
+        /** Selects the row showing line {@code line}, as soon as the file is loaded. */
+        void reveal(int line) {
+            materialize(BackgroundExecutor.Priority.INTERACTIVE);
+            pendingReveal = line;
+            revealPending();
+        }
+
+        void revealPending() {
+            int row = pendingReveal != -1 && model.document() != null ? model.rowOfLine(pendingReveal) : -1;
+            if (row != -1) {
+                pendingReveal = -1;
+                table.changeSelection(row, IniTableModel.VALUE_COLUMN, false, false);
+                table.requestFocusInWindow();
+            }
+        }
+
+        /** The tab's table, or null while the tab is a placeholder. */
+        JTable table() {
+            return table;
+        }
+
+        /** Builds the table and starts loading the file, or moves a queued load up to {@code priority}. */
+        void materialize(BackgroundExecutor.Priority priority) {
+            if (table != null) {
+                if (priority == BackgroundExecutor.Priority.INTERACTIVE) {
+                    background.prioritize(loader);
+                }
+                return;
+            }
+            table = createTable(model);
+            Diagnostics.record(Diagnostics.Metric.TABLES_CREATED, 1);
+
+            JScrollPane scrollPane = new JScrollPane(table);
+            scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+            scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
+            scrollPane.getVerticalScrollBar().setUnitIncrement(16); // Increase vertical scroll speed
+            scrollPane.getHorizontalScrollBar().setUnitIncrement(16); // Increase horizontal scroll speed
+            add(scrollPane, BorderLayout.CENTER);
+            revalidate();
+
+            loader = background.submit(new LoadINIFileWorker(file, table), priority);
+        }
+
+        /** Re-reads the file in the background if it no longer matches what the tab was loaded from. */
+        void reloadIfChanged() {
+            if (table != null && loader.isDone() && model.document() != null) {
+                background.submit(new ReloadINIFileWorker(file, model), BackgroundExecutor.Priority.BACKGROUND);
+            } else if (table == null && searchIndex.contains(file)) {
+                reindexIfChanged(); // Never shown or released, but still searchable
+            }
+        }
+
+        /** Re-indexes the file of a tab without rows if it changed on disk, so search shows no stale values. */
+        private void reindexIfChanged() {
+            IniCache cache = prefs.getBoolean(PREF_KEY_PARSE_CACHE, true) ? parseCache : null;
+            background.submit(new SwingWorker<IniDocument, Void>() {
+                @Override
+                protected IniDocument doInBackground() throws IOException {
+                    FileStamp stamp = searchIndex.stamp(file);
+                    return stamp != null && stamp.matches(file.toPath()) ? null : IniDocument.load(file, cache);
+                }
+
+                @Override
+                protected void done() {
+                    if (isCancelled() || documents.get(file) != IniTab.this || table != null) {
+                        return; // Closed meanwhile, or shown, and then its load indexes it
+                    }
+                    try {
+                        IniDocument document = get();
+                        if (document != null) {
+                            searchIndex.put(document);
+                        }
+                    } catch (InterruptedException | ExecutionException e) {
+                        searchIndex.remove(file); // Deleted or unreadable; better no hits than stale ones
+                    }
+                }
+            }, BackgroundExecutor.Priority.BACKGROUND);
+        }
+
+        /** Whether the tab holds a fully loaded view without unsaved changes. */
+        boolean isIdle() {
+            return table != null && loader.isDone() && !model.isDirty();
+        }
+
+        /** Drops the view and parsed rows; the file is parsed again the next time the tab is shown. */
+        void release() {
+            removeAll();
+            table = null;
+            loader = null;
+            model.clear();
+            revalidate();
+            repaint();
+        }
+
+        /** Stops a load still in progress and drops everything the tab holds, for good. */
+        void dispose() {
+            if (loader != null) {
+                loader.cancel(true);
+            }
+            release();
+        }
+    }
+
+    /** Builds the selected tab and, if enabled, its neighbours so they are ready when the user moves on. */
+    private void materializeSelectedTab() {
+        int selectedIndex = tabbedPane.getSelectedIndex();
+        if (selectedIndex == -1) {
+            return;
+        }
+        ((IniTab) tabbedPane.getComponentAt(selectedIndex)).materialize(BackgroundExecutor.Priority.INTERACTIVE);
+        if (prefs.getBoolean(PREF_KEY_PREFETCH_NEIGHBOURS, true)) {
+            for (int index : new int[] {selectedIndex - 1, selectedIndex + 1}) {
+                if (index >= 0 && index < tabbedPane.getTabCount()) {
+                    ((IniTab) tabbedPane.getComponentAt(index)).materialize(BackgroundExecutor.Priority.BACKGROUND);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases idle tabs whenever the old generation is still more than {@link #MEMORY_PRESSURE_THRESHOLD} full
+     * after a garbage collection.
+     */
+    private void installMemoryPressureListener() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold((long) (max * MEMORY_PRESSURE_THRESHOLD));
+            }
+        }
+        NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        emitter.addNotificationListener((notification, handback) -> {
+            if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                SwingUtilities.invokeLater(this::releaseIdleTabs);
+            }
+        }, null, null);
+    }
+
+    private void releaseIdleTabs() {
+        int released = 0;
+        for (IniTab tab : documents.all()) {
+            if (tab != tabbedPane.getSelectedComponent() && tab.isIdle()) {
+                tab.release();
+                released++;
+            }
+        }
+        if (released > 0) {
+            statusLabel.setText("Low on memory: released " + released + " idle tab(s)");
+        }
+    }
+
+    private static JTable createTable(IniTableModel model) {
+        JTable table = new JTable(model) {
+            @Override
+            public void tableChanged(TableModelEvent e) {
+                super.tableChanged(e);
+                // Section headers get a taller row, like the old double-size section labels
+                boolean allRows = e.getLastRow() == Integer.MAX_VALUE;
+                if (e.getType() == TableModelEvent.INSERT || allRows) {
+                    int lastRow = allRows ? getRowCount() - 1 : e.getLastRow();
+                    for (int row = allRows ? 0 : e.getFirstRow(); row <= lastRow; row++) {
+                        if (model.isSectionRow(row)) {
+                            setRowHeight(row, getRowHeight() * 2);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void doLayout() {
+                long start = System.nanoTime();
+                super.doLayout();
+                Diagnostics.record(Diagnostics.Metric.LAYOUT_TIME, System.nanoTime() - start);
+            }
+        };
+        table.setRowHeight(TEXT_FIELD_SIZE.height + 4);
+        table.setFillsViewportHeight(true);
+        table.setSurrendersFocusOnKeystroke(true);
+        table.putClientProperty("terminateEditOnFocusLost", Boolean.TRUE); // Keep edits when Save is clicked
+        table.getTableHeader().setReorderingAllowed(false);
+        table.setDefaultRenderer(Object.class, new IniCellRenderer());
+        table.getColumnModel().getColumn(IniTableModel.VALUE_COLUMN).setCellEditor(new TypedCellEditor());
+
+        table.getColumnModel().getColumn(IniTableModel.SECTION_COLUMN).setPreferredWidth(120);
+        table.getColumnModel().getColumn(IniTableModel.KEY_COLUMN).setPreferredWidth(180);
+        table.getColumnModel().getColumn(IniTableModel.VALUE_COLUMN).setPreferredWidth(TEXT_FIELD_SIZE.width * 2);
+        table.getColumnModel().getColumn(IniTableModel.DESCRIPTION_COLUMN).setPreferredWidth(300);
+        return table;
+    }
+
+    /**
+     * Append-only history of value edits for one table model, with undo and redo. Each step holds the cells it
+     * changed as (section, key, before, after), so it stays meaningful when a reload rebuilds the rows. Only
+     * the last {@value #MAX_STEPS} steps are kept; older ones are dropped and can no longer be undone.
+     */
+    static final class EditLog {
+        static final int MAX_STEPS = 500;
+
+        /**
+         * One cell change. {@code row} and {@code line} locate it quickly; section, key and the occurrence of a
+         * repeated key identify it.
+         */
+        record Change(int row, int line, String section, String key, int occurrence, String before, String after) {
+            IniDocument.Slot slot() {
+                return new IniDocument.Slot(new IniDocument.Key(section, key), occurrence);
+            }
+        }
+
+        /** Changes made by one user action, undone and redone together. */
+        record Step(String label, List<Change> changes) {}
+
+        private final Deque<Step> undo = new ArrayDeque<>();
+        private final Deque<Step> redo = new ArrayDeque<>();
+
+        void record(Step step) {
+            undo.push(step);
+            if (undo.size() > MAX_STEPS) {
+                undo.removeLast();
+            }
+            redo.clear();
+        }
+
+        boolean canUndo() {
+            return !undo.isEmpty();
+        }
+
+        boolean canRedo() {
+            return !redo.isEmpty();
+        }
+
+        /** Moves the newest step to the redo side and returns it, or null if there is nothing to undo. */
+        Step undo() {
+            Step step = undo.poll();
+            if (step != null) {
+                redo.push(step);
+            }
+            return step;
+        }
+
+        /** Moves the last undone step back and returns it, or null if there is nothing to redo. */
+        Step redo() {
+            Step step = redo.poll();
+            if (step != null) {
+                undo.push(step);
+            }
+            return step;
+        }
+
+        void clear() {
+            undo.clear();
+            redo.clear();
+        }
+
+        /**
+         * Forgets the changes to {@code keys}, whose values changed on disk: undoing or redoing one would put
+         * back a value from before the reload. Steps left without changes are dropped.
+         */
+        void forget(Set<IniDocument.Slot> slots) {
+            if (!slots.isEmpty()) {
+                forget(undo, slots);
+                forget(redo, slots);
+            }
+        }
+
+        private static void forget(Deque<Step> steps, Set<IniDocument.Slot> slots) {
+            List<Step> kept = new ArrayList<>(steps.size());
+            for (Step step : steps) {
+                List<Change> changes = new ArrayList<>(step.changes().size());
+                for (Change change : step.changes()) {
+                    if (!slots.contains(change.slot())) {
+                        changes.add(change);
+                    }
+                }
+                if (!changes.isEmpty()) {
+                    kept.add(changes.size() == step.changes().size() ? step : new Step(step.label(), changes));
+                }
+            }
+            steps.clear();
+            steps.addAll(kept);
+        }
+    }
+
+    /**
+     * Table model over the rows of an {@link IniDocument}: one row per section header and one per entry.
+     * Only the value column is editable; edited values are kept here until the file is saved.
+     */
+    static final class IniTableModel extends AbstractTableModel {
+        static final int SECTION_COLUMN = 0;
+        static final int KEY_COLUMN = 1;
+        static final int VALUE_COLUMN = 2;
+        static final int DESCRIPTION_COLUMN = 3;
+        private static final String[] COLUMN_NAMES = {"Section", "Key", "Value", "Description"};
+
+        private final List<IniDocument.Line> rows = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+        private final BitSet dirtyRows = new BitSet();
+        private final BitSet conflictRows = new BitSet();
+        private IniDocument document;
+        private int[] rowByLine = new int[0];
+        private final EditLog log = new EditLog();
+        private final Map<IniDocument.Key, ValueSchema.Field> fields = new HashMap<>();
+        private ValueSchema.Field[] fieldByRow = new ValueSchema.Field[0];
+
+        /** The document the rows came from, or null while the file is still loading. */
+        IniDocument document() {
+            return document;
+        }
+
+        void setDocument(IniDocument document) {
+            this.document = document;
+            rowByLine = new int[document.lines().size()];
+            Arrays.fill(rowByLine, -1);
+            for (int row = 0; row < rows.size(); row++) {
+                rowByLine[rows.get(row).number()] = row;
+            }
+            fieldByRow = new ValueSchema.Field[rows.size()]; // Typed again as rows are shown or edited
+        }
+
+        /**
+         * The inferred type of the value in {@code row}; free text while the file is still loading. Rows are
+         * typed when first asked for, once per document, so a load only pays for the rows that get painted. A
+         * key keeps the type it was first given as long as its value on disk still fits, so saving or reloading
+         * a file does not change how its keys are edited.
+         */
+        ValueSchema.Field fieldAt(int row) {
+            if (row >= fieldByRow.length || rows.get(row).kind() != IniDocument.LineKind.ENTRY) {
+                return ValueSchema.Field.TEXT;
+            }
+            ValueSchema.Field field = fieldByRow[row];
+            if (field == null) {
+                IniDocument.Line line = rows.get(row);
+                IniDocument.Key key = new IniDocument.Key(line.section(), line.key());
+                field = fields.get(key);
+                if (field == null || !field.accepts(line.value())) {
+                    field = ValueSchema.infer(document, line);
+                    fields.put(key, field);
+                }
+                fieldByRow[row] = field;
+            }
+            return field;
+        }
+
+        /** Whether the current value of {@code row} fits its inferred type. */
+        boolean isValid(int row) {
+            return fieldAt(row).accepts(values.get(row));
+        }
+
+        /** Rows whose current value does not fit its inferred type, e.g. after a patch was applied. */
+        List<Integer> invalidRows() {
+            List<Integer> invalid = new ArrayList<>();
+            for (int row = dirtyRows.nextSetBit(0); row >= 0; row = dirtyRows.nextSetBit(row + 1)) {
+                if (!isValid(row)) {
+                    invalid.add(row);
+                }
+            }
+            return invalid;
+        }
+
+        /** Returns the row showing line {@code line} of the document, or -1 if it has no row. */
+        int rowOfLine(int line) {
+            return line < rowByLine.length ? rowByLine[line] : -1;
+        }
+
+        /** Drops all rows, e.g. when the tab showing them is released. */
+        void clear() {
+            rows.clear();
+            values.clear();
+            dirtyRows.clear();
+            conflictRows.clear();
+            document = null;
+            rowByLine = new int[0];
+            fields.clear();
+            fieldByRow = new ValueSchema.Field[0];
+            log.clear();
+            fireTableDataChanged();
+        }
+
+        /** Whether any value differs from the loaded document. */
+        boolean isDirty() {
+            return !dirtyRows.isEmpty();
+        }
+
+        /** Values that differ from the loaded document, addressed by line number. */
+        List<IniDocument.Edit> pendingEdits() {
+            List<IniDocument.Edit> edits = new ArrayList<>(dirtyRows.cardinality());
+            for (int row = dirtyRows.nextSetBit(0); row >= 0; row = dirtyRows.nextSetBit(row + 1)) {
+                edits.add(new IniDocument.Edit(rows.get(row).number(), values.get(row)));
+            }
+            return edits;
+        }
+
+        /** Pending edits with the saved value each one replaces, for review before saving. */
+        List<EditLog.Change> pendingChanges() {
+            List<EditLog.Change> changes = new ArrayList<>(dirtyRows.cardinality());
+            for (int row = dirtyRows.nextSetBit(0); row >= 0; row = dirtyRows.nextSetBit(row + 1)) {
+                changes.add(change(row, rows.get(row).value(), values.get(row)));
+            }
+            return changes;
+        }
+
+        boolean canUndo() {
+            return log.canUndo();
+        }
+
+        boolean canRedo() {
+            return log.canRedo();
+        }
+
+        /** Undoes the last logged step; returns its label, or null if there was nothing to undo. */
+        String undo() {
+            EditLog.Step step = log.undo();
+            if (step == null) {
+                return null;
+            }
+            for (int i = step.changes().size() - 1; i >= 0; i--) {
+                EditLog.Change change = step.changes().get(i);
+                apply(change, change.before());
+            }
+            return step.label();
+        }
+
+        /** Redoes the last undone step; returns its label, or null if there was nothing to redo. */
+        String redo() {
+            EditLog.Step step = log.redo();
+            if (step == null) {
+                return null;
+            }
+            for (EditLog.Change change : step.changes()) {
+                apply(change, change.after());
+            }
+            return step.label();
+        }
+
+        /** Puts every edited value back to its saved value, as one undoable step. Returns the number reverted. */
+        int revert() {
+            List<EditLog.Change> changes = new ArrayList<>();
+            for (int row = dirtyRows.nextSetBit(0); row >= 0; row = dirtyRows.nextSetBit(row + 1)) {
+                changes.add(change(row, values.get(row), rows.get(row).value()));
+            }
+            if (!changes.isEmpty()) {
+                log.record(new EditLog.Step("revert " + changes.size() + " value(s)", changes));
+                for (EditLog.Change change : changes) {
+                    apply(change, change.after());
+                }
+            }
+            return changes.size();
+        }
+
+        private EditLog.Change change(int row, String before, String after) {
+            IniDocument.Line line = rows.get(row);
+            return new EditLog.Change(row, line.number(), line.section(), line.key(), document.slot(line).occurrence(), before, after);
+        }
+
+        /** Returns the row showing the entry in {@code slot}, or -1 if there is none. */
+        private int rowOf(IniDocument.Slot slot) {
+            IniDocument.Line line = document != null ? document.entry(slot) : null;
+            return line != null ? rowByLine[line.number()] : -1;
+        }
+
+        /** Sets the value a logged change refers to, finding its row again if a reload moved it. */
+        private void apply(EditLog.Change change, String value) {
+            int row = change.row();
+            if (row >= rows.size() || rows.get(row).number() != change.line() || !change.key().equals(rows.get(row).key())
+                    || !change.section().equals(rows.get(row).section())) {
+                row = rowOf(change.slot());
+            }
+            if (row != -1) {
+                values.set(row, value);
+                updateDirty(row);
+                fireTableCellUpdated(row, VALUE_COLUMN);
+            }
+        }
+
+        /** Whether the row holds an unsaved edit of a value that was also changed on disk. */
+        boolean isConflict(int row) {
+            return conflictRows.get(row);
+        }
+
+        /**
+         * Replaces the rows with those of {@code reloaded}, a newer version of the file, and re-applies unsaved
+         * edits by (section, key). An edit conflicts when the key's value on disk changed too, or the key is
+         * gone; conflicting edits that still have a row are kept and flagged. Undo history for keys that changed
+         * on disk is dropped. Returns the number of conflicts.
+         */
+        int merge(IniDocument reloaded) {
+            // Entries whose value on disk changed or is gone can no longer be undone to their old values
+            Set<IniDocument.Slot> changedOnDisk = new HashSet<>();
+            for (IniDocument.Line line : rows) {
+                if (line.kind() == IniDocument.LineKind.ENTRY) {
+                    IniDocument.Slot slot = document.slot(line);
+                    IniDocument.Line now = reloaded.entry(slot);
+                    if (now == null || !line.value().equals(now.value())) {
+                        changedOnDisk.add(slot);
+                    }
+                }
+            }
+            log.forget(changedOnDisk);
+
+            // Edits follow their entry by slot, so an edit of a repeated key stays on the same occurrence
+            List<IniDocument.Line> editedLines = new ArrayList<>();
+            List<IniDocument.Slot> editedSlots = new ArrayList<>();
+            List<String> editedValues = new ArrayList<>();
+            for (int row = dirtyRows.nextSetBit(0); row >= 0; row = dirtyRows.nextSetBit(row + 1)) {
+                editedLines.add(rows.get(row));
+                editedSlots.add(document.slot(rows.get(row)));
+                editedValues.add(values.get(row));
+            }
+
+            rows.clear();
+            values.clear();
+            dirtyRows.clear();
+            conflictRows.clear();
+            for (IniDocument.Line line : reloaded.lines()) {
+                if (line.isRow()) {
+                    rows.add(line);
+                    values.add(line.value());
+                }
+            }
+            setDocument(reloaded);
+
+            int conflicts = 0;
+            for (int i = 0; i < editedLines.size(); i++) {
+                IniDocument.Line base = editedLines.get(i);
+                int row = rowOf(editedSlots.get(i));
+                if (row == -1) {
+                    conflicts++;
+                    continue;
+                }
+                if (!rows.get(row).value().equals(base.value())) {
+                    conflictRows.set(row);
+                    conflicts++;
+                }
+                values.set(row, editedValues.get(i));
+                updateDirty(row);
+            }
+            fireTableDataChanged();
+            return conflicts;
+        }
+
+        private void updateDirty(int row) {
+            dirtyRows.set(row, !values.get(row).equals(rows.get(row).value()));
+        }
+
+        /**
+         * Points the rows at a freshly saved document. Saving only rewrites values, so line numbers are
+         * stable; values edited while the save was running stay pending.
+         */
+        void rebase(IniDocument saved) {
+            document = saved;
+            conflictRows.clear();
+            for (int row = 0; row < rows.size(); row++) {
+                rows.set(row, saved.lines().get(rows.get(row).number()));
+            }
+            for (int row = dirtyRows.nextSetBit(0); row >= 0; row = dirtyRows.nextSetBit(row + 1)) {
+                updateDirty(row);
+            }
+            if (!rows.isEmpty()) {
+                fireTableRowsUpdated(0, rows.size() - 1);
+            }
+        }
+
+        void addRows(List<IniDocument.Line> lines) {
+            if (lines.isEmpty()) {
+                return;
+            }
+            int firstRow = rows.size();
+            for (IniDocument.Line line : lines) {
+                rows.add(line);
+                values.add(line.value());
+            }
+            fireTableRowsInserted(firstRow, rows.size() - 1);
+        }
+
+        IniDocument.Line lineAt(int row) {
+            return rows.get(row);
+        }
+
+        boolean isSectionRow(int row) {
+            return rows.get(row).kind() == IniDocument.LineKind.SECTION;
+        }
+
+        String valueAt(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            IniDocument.Line line = rows.get(row);
+            if (line.kind() == IniDocument.LineKind.SECTION) {
+                return column == SECTION_COLUMN ? line.text().trim() : "";
+            }
+            return switch (column) {
+                case SECTION_COLUMN -> line.section();
+                case KEY_COLUMN -> line.key();
+                case VALUE_COLUMN -> values.get(row);
+                default -> line.description() != null ? line.description() : "";
+            };
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return column == VALUE_COLUMN && !isSectionRow(row);
+        }
+
+        @Override
+        public void setValueAt(Object value, int row, int column) {
+            String text = IniTokenizer.storable(String.valueOf(value)); // Quoted if it holds a ';' or "//"
+            if (text != null && isCellEditable(row, column) && !text.equals(values.get(row))) {
+                EditLog.Change change = change(row, values.get(row), text);
+                log.record(new EditLog.Step("edit [" + change.section() + "] " + change.key(), List.of(change)));
+                values.set(row, text);
+                updateDirty(row);
+                fireTableCellUpdated(row, column);
+            }
+        }
+    }
+
+    /**
+     * Value types inferred once per parse from an entry's value and its comment, so the table can offer a
+     * matching editor and refuse a mistyped value such as {@code 1O} for a number. The comment on the entry's
+     * line, or else a comment line right above it, may list choices ({@code 0 = off, 1 = on}) or a range
+     * ({@code Range: 1-10}). A value that does not clearly fit a type stays free text.
+     */
+    static final class ValueSchema {
+        enum Type { BOOLEAN, INTEGER, FLOAT, HEX, CHOICE, TEXT }
+
+        private static final Pattern CHOICE = Pattern.compile("\\s*(-?[\\w.]+)\\s*[=:]\\s*([^=:]*?)\\s*");
+        private static final Pattern RANGE = Pattern.compile("(?i)range\\s*:?\\s*(-?\\d{1,18})\\s*(?:-|to|\\.\\.)\\s*(-?\\d{1,18})");
+        private static final String[][] BOOLEAN_WORDS = {{"false", "true"}, {"no", "yes"}, {"off", "on"}};
+
+        /** One allowed value of a choice or boolean field and the comment's name for it, if any. */
+        record Choice(String value, String label) {
+            @Override
+            public String toString() {
+                return label.isEmpty() ? value : value + " - " + label;
+            }
+        }
+
+        /**
+         * The inferred type of one key. Booleans hold their false and true spelling as two choices
+         * ({@code 0/1}, {@code False/True}); integers may carry a range from the comment.
+         */
+        record Field(Type type, List<Choice> choices, long min, long max) {
+            static final Field TEXT = new Field(Type.TEXT, List.of(), Long.MIN_VALUE, Long.MAX_VALUE);
+            static final Field INTEGER = new Field(Type.INTEGER, List.of(), Long.MIN_VALUE, Long.MAX_VALUE);
+            static final Field FLOAT = new Field(Type.FLOAT, List.of(), Long.MIN_VALUE, Long.MAX_VALUE);
+            static final Field HEX = new Field(Type.HEX, List.of(), Long.MIN_VALUE, Long.MAX_VALUE);
+
+            boolean isBounded() {
+                return min != Long.MIN_VALUE || max != Long.MAX_VALUE;
+            }
+
+            boolean accepts(String value) {
+                return switch (type) {
+                    case BOOLEAN, CHOICE -> choice(value) != null;
+                    case INTEGER -> isInteger(value) && (!isBounded() || Long.parseLong(value) >= min && Long.parseLong(value) <= max);
+                    case FLOAT -> isFloat(value);
+                    case HEX -> isHex(value);
+                    case TEXT -> true;
+                };
+            }
+
+            /** The choice spelled {@code value}, ignoring case, or null. */
+            Choice choice(String value) {
+                for (Choice choice : choices) {
+                    if (choice.value().equalsIgnoreCase(value)) {
+                        return choice;
+                    }
+                }
+                return null;
+            }
+
+            /** What the field expects, for tooltips and error messages; null for free text. */
+            String describe() {
+                return switch (type) {
+                    case BOOLEAN -> "On/off: " + choices.get(0).value() + " or " + choices.get(1).value();
+                    case INTEGER -> isBounded() ? "Whole number from " + min + " to " + max : "Whole number";
+                    case FLOAT -> "Number";
+                    case HEX -> "Hexadecimal number, like 0x1F";
+                    case CHOICE -> "One of: " + choices.stream().map(Choice::toString).collect(Collectors.joining(", "));
+                    case TEXT -> null;
+                };
+            }
+        }
+
+        private ValueSchema() {
+        }
+
+        /** Infers the field of {@code line}, an entry of {@code document}. */
+        static Field infer(IniDocument document, IniDocument.Line line) {
+            String value = line.value();
+            String comment = line.description();
+            if (comment == null && line.number() > 0) {
+                IniDocument.Line above = document.lines().get(line.number() - 1);
+                comment = above.kind() == IniDocument.LineKind.COMMENT ? above.description() : null;
+            }
+
+            List<Choice> choices = choices(comment);
+            if (choices.size() >= 2 && new Field(Type.CHOICE, choices, 0, 0).choice(value) != null) {
+                boolean onOff = choices.size() == 2 && choices.get(0).value().equals("0") && choices.get(1).value().equals("1");
+                return new Field(onOff ? Type.BOOLEAN : Type.CHOICE, choices, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+            for (String[] words : BOOLEAN_WORDS) {
+                if (value.equalsIgnoreCase(words[0]) || value.equalsIgnoreCase(words[1])) {
+                    // Spell both values the way the file does: false/true, False/True or FALSE/TRUE
+                    return new Field(Type.BOOLEAN, List.of(new Choice(sameCase(words[0], value), ""), new Choice(sameCase(words[1], value), "")),
+                            Long.MIN_VALUE, Long.MAX_VALUE);
+                }
+            }
+            if (isHex(value)) {
+                return Field.HEX;
+            }
+            if (isInteger(value)) {
+                Matcher range = comment != null ? RANGE.matcher(comment) : null;
+                if (range != null && range.find()) {
+                    long min = Long.parseLong(range.group(1));
+                    long max = Long.parseLong(range.group(2));
+                    long number = Long.parseLong(value);
+                    if (min <= number && number <= max) {
+                        return new Field(Type.INTEGER, List.of(), min, max);
+                    }
+                }
+                return Field.INTEGER;
+            }
+            return isFloat(value) ? Field.FLOAT : Field.TEXT;
+        }
+
+        // Hand-written rather than regex checks: they run for every row of every load
+
+        /** Whether {@code value} is a whole number of at most 18 digits, so it always fits a long. */
+        static boolean isInteger(String value) {
+            int start = !value.isEmpty() && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+            int digits = value.length() - start;
+            if (digits < 1 || digits > 18) {
+                return false;
+            }
+            for (int i = start; i < value.length(); i++) {
+                if (!isDigit(value.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Whether {@code value} is a decimal number such as {@code 1}, {@code -0.5}, {@code .25} or {@code 1e-3}. */
+        static boolean isFloat(String value) {
+            int length = value.length();
+            int i = length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+            int digits = 0;
+            for (; i < length && isDigit(value.charAt(i)); i++) {
+                digits++;
+            }
+            if (i < length && value.charAt(i) == '.') {
+                for (i++; i < length && isDigit(value.charAt(i)); i++) {
+                    digits++;
+                }
+            }
+            if (digits == 0) {
+                return false;
+            }
+            if (i < length && (value.charAt(i) | 0x20) == 'e') {
+                i++;
+                if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                    i++;
+                }
+                int exponent = i;
+                while (i < length && isDigit(value.charAt(i))) {
+                    i++;
+                }
+                if (i == exponent) {
+                    return false;
+                }
+            }
+            return i == length;
+        }
+
+        /** Whether {@code value} is a {@code 0x} prefixed hexadecimal number of at most 16 digits. */
+        static boolean isHex(String value) {
+            int length = value.length();
+            if (length < 3 || length > 18 || value.charAt(0) != '0' || (value.charAt(1) | 0x20) != 'x') {
+                return false;
+            }
+            for (int i = 2; i < length; i++) {
+                char c = (char) (value.charAt(i) | 0x20);
+                if (!isDigit(c) && (c < 'a' || c > 'f')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        /** Parses a comment like {@code 0 = off, 1 = on} into its choices; any part that is not {@code value = label} yields none. */
+        private static List<Choice> choices(String comment) {
+            if (comment == null || comment.indexOf('=') < 0 && comment.indexOf(':') < 0) {
+                return List.of();
+            }
+            List<Choice> choices = new ArrayList<>();
+            for (String part : comment.split("[,;|/]")) {
+                Matcher matcher = CHOICE.matcher(part);
+                if (!matcher.matches()) {
+                    return List.of();
+                }
+                choices.add(new Choice(matcher.group(1), matcher.group(2)));
+            }
+            return choices;
+        }
+
+        private static String sameCase(String word, String like) {
+            if (like.equals(like.toUpperCase(Locale.ROOT))) {
+                return word.toUpperCase(Locale.ROOT);
+            }
+            return Character.isUpperCase(like.charAt(0)) ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word;
+        }
+    }
+
+    private static class IniCellRenderer extends DefaultTableCellRenderer {
+        private static final Color CONFLICT_BACKGROUND = new Color(255, 210, 200);
+        static final Color INVALID_BACKGROUND = new Color(255, 235, 170);
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            IniTableModel model = (IniTableModel) table.getModel();
+            Font font = table.getFont();
+            if (model.isSectionRow(row)) {
+                setFont(font.deriveFont(Font.BOLD, font.getSize() * 1.5f));
+                setBackground(Color.DARK_GRAY); // Set dark background
+                setForeground(Color.WHITE); // Set text color to white
+            } else {
+                setFont(font);
+                boolean valueColumn = column == IniTableModel.VALUE_COLUMN;
+                if (!isSelected) {
+                    setBackground(model.isConflict(row) ? CONFLICT_BACKGROUND
+                            : valueColumn && !model.isValid(row) ? INVALID_BACKGROUND : table.getBackground());
+                    setForeground(valueColumn ? table.getForeground() : Color.GRAY);
+                }
+            }
+            setToolTipText(column == IniTableModel.VALUE_COLUMN ? model.fieldAt(row).describe() : null);
+            return this;
+        }
+    }
+
+    /**
+     * Value column editor that picks a control by the row's inferred type: a check box for on/off values, a
+     * spinner for whole numbers, a combo box for choices and a text field for the rest. The text fields are
+     * checked as they are typed, and a value the type does not accept is never committed.
+     */
+    private static final class TypedCellEditor extends AbstractCellEditor implements TableCellEditor {
+        private final JCheckBox checkBox = new JCheckBox();
+        private final SpinnerNumberModel spinnerModel = new SpinnerNumberModel(Long.valueOf(0), null, null, Long.valueOf(1));
+        private final JSpinner spinner = new JSpinner(spinnerModel);
+        private final JComboBox<ValueSchema.Choice> comboBox = new JComboBox<>();
+        private final JTextField textField = new JTextField();
+        private final JFormattedTextField spinnerField;
+        private ValueSchema.Field field = ValueSchema.Field.TEXT;
+        private String original = "";
+        private boolean updating; // Ignores the events fired while the controls are set up
+
+        TypedCellEditor() {
+            checkBox.setHorizontalAlignment(JCheckBox.LEFT);
+            checkBox.addActionListener(e -> commit());
+            comboBox.putClientProperty("JComboBox.isTableCellEditor", Boolean.TRUE);
+            comboBox.addActionListener(e -> commit());
+            spinner.setEditor(new JSpinner.NumberEditor(spinner, "#")); // No grouping, so 10000 is not shown as 10,000
+            spinnerField = ((JSpinner.DefaultEditor) spinner.getEditor()).getTextField();
+            // The default formatter parses a prefix, taking "1O" as 1 and "12.7" as 12; only take what the field accepts
+            NumberFormatter strict = new NumberFormatter(new DecimalFormat("#")) {
+                @Override
+                public Object stringToValue(String text) throws ParseException {
+                    String trimmed = text.trim();
+                    if (!field.accepts(trimmed)) {
+                        throw new ParseException(text, 0);
+                    }
+                    return Long.valueOf(trimmed);
+                }
+            };
+            strict.setValueClass(Long.class);
+            spinnerField.setFormatterFactory(new DefaultFormatterFactory(strict));
+            spinner.addFocusListener(new java.awt.event.FocusAdapter() {
+                @Override
+                public void focusGained(java.awt.event.FocusEvent e) {
+                    spinnerField.requestFocusInWindow();
+                }
+            });
+            for (JTextField text : List.of(textField, spinnerField)) {
+                text.addFocusListener(new java.awt.event.FocusAdapter() {
+                    @Override
+                    public void focusGained(java.awt.event.FocusEvent e) {
+                        SwingUtilities.invokeLater(text::selectAll); // Auto-select all text when the cell is edited
+                    }
+                });
+                text.getDocument().addDocumentListener(new DocumentListener() {
+                    @Override
+                    public void insertUpdate(DocumentEvent e) {
+                        check(text);
+                    }
+
+                    @Override
+                    public void removeUpdate(DocumentEvent e) {
+                        check(text);
+                    }
+
+                    @Override
+                    public void changedUpdate(DocumentEvent e) {
+                    }
+                });
+                text.addActionListener(e -> stopCellEditing());
+            }
+        }
+
+        private void commit() {
+            if (!updating) {
+                stopCellEditing();
+            }
+        }
+
+        /** Colors {@code text} while it holds a value the field would refuse or the file cannot hold. */
+        private void check(JTextField text) {
+            String value = text.getText().trim();
+            boolean storable = IniTokenizer.storable(value) != null;
+            boolean valid = storable && field.accepts(value);
+            text.setBackground(valid ? UIManager.getColor("TextField.background") : IniCellRenderer.INVALID_BACKGROUND);
+            text.setToolTipText(valid ? null : storable ? "Expected: " + field.describe() : "A value with ';' or \"//\" cannot also hold a double quote");
+        }
+
+        @Override
+        public boolean isCellEditable(EventObject event) {
+            if (event instanceof MouseEvent mouse && mouse.getSource() instanceof JTable table) {
+                int row = table.rowAtPoint(mouse.getPoint());
+                ValueSchema.Type type = row >= 0 ? ((IniTableModel) table.getModel()).fieldAt(row).type() : ValueSchema.Type.TEXT;
+                // Like the default editors: one click toggles a check box or opens a list, text takes two
+                return mouse.getClickCount() >= (type == ValueSchema.Type.BOOLEAN || type == ValueSchema.Type.CHOICE ? 1 : 2);
+            }
+            return true;
+        }
+
+        @Override
+        public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
+            field = ((IniTableModel) table.getModel()).fieldAt(row);
+            original = String.valueOf(value);
+            updating = true;
+            try {
+                switch (field.type()) {
+                    case BOOLEAN -> {
+                        ValueSchema.Choice on = field.choices().get(1);
+                        checkBox.setSelected(on.value().equalsIgnoreCase(original));
+                        checkBox.setText(on.label().isEmpty() ? on.value() : on.label());
+                        checkBox.setBackground(table.getSelectionBackground());
+                        return checkBox;
+                    }
+                    case CHOICE -> {
+                        comboBox.setModel(new DefaultComboBoxModel<>(field.choices().toArray(new ValueSchema.Choice[0])));
+                        comboBox.setSelectedItem(field.choice(original));
+                        return comboBox;
+                    }
+                    case INTEGER -> {
+                        spinnerModel.setMinimum(field.min() == Long.MIN_VALUE ? null : field.min());
+                        spinnerModel.setMaximum(field.max() == Long.MAX_VALUE ? null : field.max());
+                        long number = ValueSchema.isInteger(original) ? Long.parseLong(original) : 0;
+                        spinnerModel.setValue(Math.max(field.min(), Math.min(field.max(), number))); // Start in range
+                        check(spinnerField);
+                        return spinner;
+                    }
+                    default -> {
+                        textField.setText(original);
+                        check(textField);
+                        return textField;
+                    }
+                }
+            } finally {
+                updating = false;
+            }
+        }
+
+        @Override
+        public Object getCellEditorValue() {
+            return switch (field.type()) {
+                case BOOLEAN -> {
+                    // Keep the file's spelling when the state did not change
+                    boolean on = checkBox.isSelected();
+                    ValueSchema.Choice choice = field.choices().get(on ? 1 : 0);
+                    yield choice.value().equalsIgnoreCase(original) ? original : choice.value();
+                }
+                case CHOICE -> {
+                    ValueSchema.Choice choice = (ValueSchema.Choice) comboBox.getSelectedItem();
+                    yield choice == null || choice.value().equalsIgnoreCase(original) ? original : choice.value();
+                }
+                case INTEGER -> {
+                    long number = ((Number) spinner.getValue()).longValue();
+                    yield ValueSchema.isInteger(original) && Long.parseLong(original) == number ? original : Long.toString(number); // Keeps "007"
+                }
+                default -> textField.getText().trim();
+            };
+        }
+
+        @Override
+        public boolean stopCellEditing() {
+            if (field.type() == ValueSchema.Type.INTEGER) {
+                if (!field.accepts(spinnerField.getText().trim())) {
+                    check(spinnerField);
+                    return false;
+                }
+                try {
+                    spinner.commitEdit();
+                } catch (ParseException e) {
+                    return false;
+                }
+            } else if (field.type() != ValueSchema.Type.BOOLEAN && field.type() != ValueSchema.Type.CHOICE
+                    && (!field.accepts(textField.getText().trim()) || IniTokenizer.storable(textField.getText().trim()) == null)) {
+                return false;
+            }
+            return super.stopCellEditing();
+        }
+    }
+
+    private static JPanel createTabComponent(String title, IniTableModel model, Runnable close) {
+        JPanel tabComponent = new JPanel();
+        tabComponent.setOpaque(false);
+        tabComponent.setLayout(new BoxLayout(tabComponent, BoxLayout.X_AXIS));
+
+        JLabel titleLabel = new JLabel(title);
+        tabComponent.add(titleLabel);
+        model.addTableModelListener(e -> titleLabel.setText(model.isDirty() ? "*" + title : title)); // Modified indicator
+
+        JButton closeButton = new JButton("x");
+        closeButton.setOpaque(false);
+        closeButton.setContentAreaFilled(false);
+        closeButton.setBorderPainted(false);
+        closeButton.setFocusPainted(false);
+        closeButton.setMargin(new Insets(0, 5, 0, 0));
+        closeButton.setForeground(Color.BLACK);
+        closeButton.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseEntered(MouseEvent e) {
+                closeButton.setForeground(Color.RED);
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                closeButton.setForeground(Color.BLACK);
+            }
+        });
+        closeButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                close.run();
+            }
+        });
+        tabComponent.add(closeButton);
+
+        return tabComponent;
+    }
+
+    /**
+     * Immutable, parsed view of an INI file. Built off the EDT by {@link #parse(File)} so the UI only ever
+     * receives finished rows. The original text is kept so saves can patch value spans in place and leave
+     * every other character untouched.
+     */
+    static final class IniDocument {
+        enum LineKind { BLANK, COMMENT, SECTION, ENTRY, OTHER }
+
+        /**
+         * One physical line of the file. {@code offset} is the character offset of the line start and
+         * {@code section} the name of the section the line belongs to ("" before the first header).
+         * For entries, {@code valueStart}/{@code valueEnd} are the absolute offsets of the trimmed value;
+         * they are -1 for every other kind of line.
+         */
+        record Line(LineKind kind, int number, int offset, String text, String section, String key, String value, String description,
+                    int valueStart, int valueEnd) {
+            boolean isRow() {
+                return kind == LineKind.SECTION || kind == LineKind.ENTRY;
+            }
+        }
+
+        /** A new value for the entry on line {@code line}. */
+        record Edit(int line, String value) {}
+
+        /**
+         * Section-qualified key. Matching is case-insensitive, like the Windows profile API the games read
+         * their INIs with.
+         */
+        record Key(String section, String key) {
+            Key {
+                section = section.toLowerCase(Locale.ROOT);
+                key = key.toLowerCase(Locale.ROOT);
+            }
+        }
+
+        /**
+         * One entry of a key that may be repeated within its section: the key and which occurrence of it (0 for
+         * the first) the entry is. Unlike a line number it survives lines being added or removed elsewhere.
+         */
+        record Slot(Key key, int occurrence) {}
+
+        private final File file;
+        private final String content;
+        private final List<Line> lines;
+        private final Map<Key, Integer> index; // Line numbers, so documents that differ only in values can share it
+        private final FileStamp stamp;
+        private final TextFormat format;
+
+        private IniDocument(File file, String content, FileStamp stamp, TextFormat format, List<Line> lines, Map<Key, Integer> index) {
+            this.file = file;
+            this.content = content;
+            this.stamp = stamp;
+            this.format = format;
+            this.lines = Collections.unmodifiableList(lines);
+            this.index = Collections.unmodifiableMap(index);
+        }
+
+        File file() {
+            return file;
+        }
+
+        String content() {
+            return content;
+        }
+
+        /** What the file looked like on disk when this document was read or written, or null if unknown. */
+        FileStamp stamp() {
+            return stamp;
+        }
+
+        /** The charset, byte order mark and line terminator the file is written back with. */
+        TextFormat format() {
+            return format;
+        }
+
+        List<Line> lines() {
+            return lines;
+        }
+
+        /** Number of distinct (section, key) entries. */
+        int entryCount() {
+            return index.size();
+        }
+
+        /**
+         * Returns the entry for {@code key} in {@code section} ("" for keys before the first header), or null.
+         * If a key is repeated within a section the first occurrence wins.
+         */
+        Line entry(String section, String key) {
+            Integer number = index.get(new Key(section, key));
+            return number != null ? lines.get(number) : null;
+        }
+
+        /** Returns the entry for the given occurrence of a key, or null if the key occurs fewer times. */
+        Line entry(Slot slot) {
+            Integer first = index.get(slot.key());
+            if (first == null) {
+                return null;
+            }
+            int remaining = slot.occurrence();
+            for (int number = first; number < lines.size(); number++) {
+                Line line = lines.get(number);
+                if (line.kind() == LineKind.ENTRY && slot.key().equals(new Key(line.section(), line.key())) && remaining-- == 0) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        /** The slot of {@code entry}, a line of this document; counting is only needed for repeated keys. */
+        Slot slot(Line entry) {
+            Key key = new Key(entry.section(), entry.key());
+            int first = index.get(key);
+            int occurrence = 0;
+            for (int number = first; number < entry.number(); number++) {
+                Line line = lines.get(number);
+                if (line.kind() == LineKind.ENTRY && key.equals(new Key(line.section(), line.key()))) {
+                    occurrence++;
+                }
+            }
+            return new Slot(key, occurrence);
+        }
+
+        /** Returns the value of {@code key} in {@code section}, or null if there is no such entry. */
+        String get(String section, String key) {
+            Line line = entry(section, key);
+            return line != null ? line.value() : null;
+        }
+
+        /** Creates an edit setting {@code key} in {@code section} to {@code value}. */
+        Edit edit(String section, String key, String value) {
+            Line line = entry(section, key);
+            if (line == null) {
+                throw new IllegalArgumentException("No key " + key + " in section [" + section + "]");
+            }
+            return new Edit(line.number(), value);
+        }
+
+        static IniDocument parse(File file) throws IOException {
+            return load(file, null);
+        }
+
+        /**
+         * Reads {@code file}. If {@code cache} (which may be null) holds the line structure of exactly these
+         * bytes, it is reused and the text is not tokenized again; otherwise the file is parsed and cached.
+         */
+        static IniDocument load(File file, IniCache cache) throws IOException {
+            Path path = file.toPath();
+            Diagnostics.ReadEvent read = new Diagnostics.ReadEvent();
+            read.begin();
+            long start = System.nanoTime();
+            FileTime lastModified = Files.getLastModifiedTime(path); // Read first so a concurrent write shows up as a change
+            byte[] bytes = Files.readAllBytes(path);
+            read.end();
+            long readNanos = System.nanoTime() - start;
+
+            Diagnostics.ParseEvent parse = new Diagnostics.ParseEvent();
+            parse.begin();
+            start = System.nanoTime();
+            FileStamp stamp = FileStamp.of(lastModified, bytes);
+            TextFormat.Decoded decoded = TextFormat.decode(bytes);
+            String content = decoded.text();
+            List<Line> lines = cache != null ? cache.lookup(file, stamp, content) : null;
+            IniDocument document = lines != null ? fromLines(file, content, stamp, decoded.format(), lines)
+                    : parse(file, content, stamp, decoded.format());
+            parse.end();
+            long parseNanos = System.nanoTime() - start;
+            if (cache != null && lines == null) {
+                cache.store(document);
+            }
+
+            Diagnostics.record(Diagnostics.Metric.FILES_READ, 1);
+            Diagnostics.record(Diagnostics.Metric.BYTES_READ, bytes.length);
+            Diagnostics.record(Diagnostics.Metric.READ_TIME, readNanos);
+            Diagnostics.record(Diagnostics.Metric.FILES_PARSED, 1);
+            Diagnostics.record(Diagnostics.Metric.CACHE_HITS, lines != null ? 1 : 0);
+            Diagnostics.record(Diagnostics.Metric.LINES_PARSED, document.lines().size());
+            Diagnostics.record(Diagnostics.Metric.PARSE_TIME, parseNanos);
+            read.file = parse.file = path.toString();
+            read.bytes = bytes.length;
+            read.commit();
+            parse.lines = document.lines().size();
+            parse.cacheHit = lines != null;
+            parse.commit();
+            return document;
+        }
+
+        static IniDocument parse(File file, String content) {
+            return parse(file, content, null, TextFormat.DEFAULT);
+        }
+
+        /** Parses {@code content}, decoded from a file of the given format, without a byte order mark. */
+        static IniDocument parse(File file, String content, FileStamp stamp, TextFormat format) {
+            List<Line> lines = new ArrayList<>();
+            IniTokenizer tokenizer = new IniTokenizer().reset(content);
+            while (tokenizer.next()) {
+                lines.add(tokenizer.toLine());
+            }
+            return fromLines(file, content, stamp, format, lines);
+        }
+
+        /** Builds the key index over already tokenized lines. */
+        private static IniDocument fromLines(File file, String content, FileStamp stamp, TextFormat format, List<Line> lines) {
+            Map<Key, Integer> index = new HashMap<>();
+            for (Line line : lines) {
+                if (line.kind() == LineKind.ENTRY) {
+                    index.putIfAbsent(new Key(line.section(), line.key()), line.number());
+                }
+            }
+            return new IniDocument(file, content, stamp, format, lines, index);
+        }
+
+        /**
+         * Writes the given edits to {@link #file()} and returns the document for the saved content. With no
+         * edits the file is left alone. A file that changed on disk since this document was read is not touched
+         * and a {@link FileChangedException} is thrown instead; the caller reloads and merges it, then saves the
+         * edits against the new document. Nothing is written if a value would not read back as given (see
+         * {@link IniTokenizer#storable}).
+         */
+        IniDocument write(List<Edit> edits, int backups) throws IOException {
+            if (edits.isEmpty()) {
+                return this;
+            }
+            Path path = file.toPath();
+            if (stamp != null && !stamp.matches(path)) {
+                throw new FileChangedException(file);
+            }
+            // Patch only the edited value spans and replace the file in one pass, in the encoding it was read in
+            List<Line> patched = patched(edits);
+            String updated = render(edits);
+            byte[] bytes = format.encodeFile(updated);
+            AtomicFileWriter.write(path, bytes, backups);
+            return new IniDocument(file, updated, FileStamp.of(Files.getLastModifiedTime(path), bytes), format, patched, index);
+        }
+
+        /**
+         * The lines of {@link #render} of {@code edits}, built without parsing the text again: only the edited
+         * lines are tokenized, the lines after each are shifted by the change in length, and the key index can
+         * be shared, since an edit never adds, removes or renames a key. Throws if an edited line does not read
+         * back with the value it was given, so a value that would spill into the comment is never written.
+         */
+        private List<Line> patched(List<Edit> edits) throws IOException {
+            List<Edit> sorted = new ArrayList<>(edits);
+            sorted.sort(Comparator.comparingInt(Edit::line));
+            List<Line> patched = new ArrayList<>(lines.size());
+            IniTokenizer tokenizer = new IniTokenizer();
+            int shift = 0;
+            int next = 0;
+            for (Edit edit : sorted) {
+                for (; next < edit.line(); next++) {
+                    patched.add(shifted(lines.get(next), shift));
+                }
+                Line line = lines.get(next++);
+                int offset = line.offset() + shift;
+                String text = line.text().substring(0, line.valueStart() - line.offset()) + edit.value()
+                        + line.text().substring(line.valueEnd() - line.offset());
+                tokenizer.line(text, line.number(), line.section());
+                if (edit.value().indexOf('\n') >= 0 || edit.value().indexOf('\r') >= 0 || !edit.value().equals(tokenizer.value())) {
+                    throw new IOException("[" + line.section() + "] " + line.key() + " = " + edit.value()
+                            + " would not read back as written; put it in double quotes");
+                }
+                patched.add(new Line(LineKind.ENTRY, line.number(), offset, text, line.section(), tokenizer.key(), tokenizer.value(),
+                        tokenizer.description(), offset + tokenizer.valueStart(), offset + tokenizer.valueEnd()));
+                shift += text.length() - line.text().length();
+            }
+            for (; next < lines.size(); next++) {
+                patched.add(shifted(lines.get(next), shift));
+            }
+            return patched;
+        }
+
+        private static Line shifted(Line line, int shift) {
+            if (shift == 0) {
+                return line;
+            }
+            return new Line(line.kind(), line.number(), line.offset() + shift, line.text(), line.section(), line.key(), line.value(),
+                    line.description(), line.valueStart() < 0 ? -1 : line.valueStart() + shift, line.valueEnd() < 0 ? -1 : line.valueEnd() + shift);
+        }
+
+        /**
+         * Returns the file content with the given edits applied. Only the value spans of the edited lines
+         * change; comments, spacing and line terminators everywhere else are copied through verbatim.
+         */
+        String render(List<Edit> edits) {
+            List<Edit> sorted = new ArrayList<>(edits);
+            sorted.sort(Comparator.comparingInt(Edit::line));
+            StringBuilder out = new StringBuilder(content.length() + 16 * sorted.size());
+            int copied = 0;
+            for (Edit edit : sorted) {
+                Line line = lines.get(edit.line());
+                if (line.kind() != LineKind.ENTRY) {
+                    throw new IllegalArgumentException("Line " + (edit.line() + 1) + " is not a key=value entry");
+                }
+                out.append(content, copied, line.valueStart()).append(edit.value());
+                copied = line.valueEnd();
+            }
+            out.append(content, copied, content.length());
+            return out.toString();
+        }
+    }
+
+    /**
+     * Single-pass, index-based INI tokenizer shared by {@link IniDocument} and {@link IniStream}. It walks a
+     * line once, records where the key, value and description start and end, and only builds Strings when
+     * they are asked for, so callers that skip most lines (a streamed get, a patch plan) allocate next to
+     * nothing for them.
+     * <p>
+     * A value that starts with a double quote runs to the closing quote, so {@code Path = "C:\a;b" ; note}
+     * keeps {@code ;b} in the value. The quotes stay part of the value, and an unclosed quote is read as an
+     * ordinary character.
+     */
+    static final class IniTokenizer {
+        private String text = "";
+        private int next; // Start of the line after the current one
+        private int number = -1;
+        private String section = "";
+        private IniDocument.LineKind kind;
+        private int lineStart;
+        private int lineEnd;
+        private int nameStart; // Key of an entry, name of a section
+        private int nameEnd;
+        private int valueStart;
+        private int valueEnd;
+        private int descriptionStart; // -1 without a description
+        private int descriptionEnd;
+
+        /** Starts over on {@code text}, which {@link #next()} then walks line by line. */
+        IniTokenizer reset(String text) {
+            this.text = text;
+            next = 0;
+            number = -1;
+            section = "";
+            return this;
+        }
+
+        /** Moves to the next line of the text; false at the end. */
+        boolean next() {
+            int length = text.length();
+            if (next >= length) {
+                return false;
+            }
+            int end = next;
+            while (end < length && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+            tokenize(next, end);
+
+            // Same terminators as BufferedReader.readLine(): \n, \r or \r\n
+            next = end + 1 < length && text.charAt(end) == '\r' && text.charAt(end + 1) == '\n' ? end + 2 : end + 1;
+            return true;
+        }
+
+        /** Tokenizes {@code line} on its own, as line {@code number} of {@code section}. */
+        IniTokenizer line(String line, int number, String section) {
+            this.number = number - 1;
+            this.section = section;
+            feed(line);
+            return this;
+        }
+
+        /** Tokenizes {@code line} as the line following the previous one, for callers that split lines themselves. */
+        void feed(String line) {
+            text = line;
+            next = line.length();
+            tokenize(0, line.length());
+        }
+
+        private void tokenize(int start, int end) {
+            number++;
+            lineStart = start;
+            lineEnd = end;
+            valueStart = valueEnd = -1;
+            descriptionStart = descriptionEnd = -1;
+            if (start < end && text.charAt(start) == ';') {
+                kind = IniDocument.LineKind.COMMENT;
+                setDescription(start + 1);
+                return;
+            }
+            if (isBlank(start, end)) {
+                kind = IniDocument.LineKind.BLANK;
+                return;
+            }
+            if (text.charAt(start) == '[') {
+                kind = IniDocument.LineKind.SECTION;
+                int headerEnd = trimEnd(start, end);
+                int close = start + 1;
+                while (close < headerEnd && text.charAt(close) != ']') {
+                    close++;
+                }
+                setName(start + 1, close);
+                section = text.substring(nameStart, nameEnd);
+                return;
+            }
+            int equals = start;
+            while (equals < end && text.charAt(equals) != '=') {
+                equals++;
+            }
+            if (equals == end) {
+                kind = IniDocument.LineKind.OTHER;
+                return;
+            }
+            kind = IniDocument.LineKind.ENTRY;
+            setName(start, equals);
+
+            // A quoted value hides its ';' and "//"; the description is looked for after the closing quote
+            int scan = trimStart(equals + 1, end);
+            if (scan < end && text.charAt(scan) == '"') {
+                int close = text.indexOf('"', scan + 1);
+                scan = close >= 0 && close < end ? close + 1 : equals + 1;
+            } else {
+                scan = equals + 1;
+            }
+            // The value runs up to the first ';' or, failing that, the first "//"
+            int comment = indexOf(';', scan, end);
+            int markerLength = 1;
+            if (comment < 0) {
+                comment = indexOf('/', scan, end);
+                while (comment >= 0 && (comment + 1 == end || text.charAt(comment + 1) != '/')) {
+                    comment = indexOf('/', comment + 1, end);
+                }
+                markerLength = 2;
+            }
+            int rawEnd = comment < 0 ? end : comment;
+            if (comment >= 0) {
+                setDescription(comment + markerLength);
+            }
+            valueEnd = trimEnd(equals + 1, rawEnd);
+            valueStart = trimStart(equals + 1, valueEnd);
+        }
+
+        private void setName(int start, int end) {
+            nameEnd = trimEnd(start, end);
+            nameStart = trimStart(start, nameEnd);
+        }
+
+        private void setDescription(int start) {
+            descriptionEnd = trimEnd(start, lineEnd);
+            descriptionStart = trimStart(start, descriptionEnd);
+        }
+
+        private int trimStart(int start, int end) {
+            while (start < end && text.charAt(start) <= ' ') {
+                start++;
+            }
+            return start;
+        }
+
+        private int trimEnd(int start, int end) {
+            while (end > start && text.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            return end;
+        }
+
+        private int indexOf(char c, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (text.charAt(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isBlank(int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (!Character.isWhitespace(text.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        IniDocument.LineKind kind() {
+            return kind;
+        }
+
+        int number() {
+            return number;
+        }
+
+        /** Offsets into the text being walked; -1 for lines that are not entries. */
+        int valueStart() {
+            return valueStart;
+        }
+
+        int valueEnd() {
+            return valueEnd;
+        }
+
+        /** The current section, or for a section header the section it opens. */
+        String section() {
+            return section;
+        }
+
+        String text() {
+            return text.substring(lineStart, lineEnd);
+        }
+
+        String key() {
+            return kind == IniDocument.LineKind.ENTRY ? text.substring(nameStart, nameEnd) : null;
+        }
+
+        String value() {
+            return valueStart >= 0 ? text.substring(valueStart, valueEnd) : null;
+        }
+
+        String description() {
+            return descriptionStart >= 0 ? text.substring(descriptionStart, descriptionEnd) : null;
+        }
+
+        /** Whether the current line is the entry {@code key} of {@code section}, compared like {@link IniDocument.Key}. */
+        boolean isEntry(String section, String key) {
+            return kind == IniDocument.LineKind.ENTRY && nameEnd - nameStart == key.length()
+                    && text.regionMatches(true, nameStart, key, 0, key.length()) && this.section.equalsIgnoreCase(section);
+        }
+
+        IniDocument.Line toLine() {
+            return new IniDocument.Line(kind, number, lineStart, text(), section, key(), value(), description(), valueStart, valueEnd);
+        }
+
+        /**
+         * Returns {@code value} the way it has to be written to read back unchanged: as it is, or in double quotes
+         * if it holds a ';' or "//" or starts or ends with a blank, which would otherwise be cut off. Returns null
+         * if no line can hold it: it has a line break, or needs quotes and holds a double quote itself.
+         */
+        static String storable(String value) {
+            if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                return null;
+            }
+            IniTokenizer tokenizer = new IniTokenizer();
+            if (value.equals(tokenizer.line("k=" + value, 0, "").value())) {
+                return value;
+            }
+            String quoted = '"' + value + '"';
+            return value.indexOf('"') < 0 && quoted.equals(tokenizer.line("k=" + quoted, 0, "").value()) ? quoted : null;
+        }
+    }
+
+    /**
+     * Compares INI files by section and key rather than by line, so reordered or reformatted files only
+     * differ where a value does. Keys match case-insensitively and, as everywhere else, the first occurrence
+     * of a duplicated key is the one that counts. Folders are compared file by file, pairing files by their
+     * path below each folder, with the pairs parsed and compared in parallel.
+     */
+    static final class IniDiff {
+        enum Kind { ADDED, REMOVED, CHANGED }
+
+        /**
+         * One difference, {@code file} being the path below the compared folders ("" for a file comparison).
+         * A whole file that exists on one side only has a null section and key.
+         */
+        record Difference(String file, Kind kind, String section, String key, String left, String right) {
+            boolean isFile() {
+                return key == null;
+            }
+        }
+
+        /** Differences of a folder comparison and what it took. */
+        record Result(List<Difference> differences, int filesCompared, long elapsedNanos) {}
+
+        private IniDiff() {
+        }
+
+        /** Keys removed from or changed in {@code left} in its order, then keys only {@code right} has. */
+        static List<Difference> compare(String file, IniDocument left, IniDocument right) {
+            List<Difference> differences = new ArrayList<>();
+            for (IniDocument.Line line : left.lines()) {
+                if (line.kind() == IniDocument.LineKind.ENTRY && left.entry(line.section(), line.key()) == line) {
+                    String other = right.get(line.section(), line.key());
+                    if (other == null) {
+                        differences.add(new Difference(file, Kind.REMOVED, line.section(), line.key(), line.value(), null));
+                    } else if (!other.equals(line.value())) {
+                        differences.add(new Difference(file, Kind.CHANGED, line.section(), line.key(), line.value(), other));
+                    }
+                }
+            }
+            for (IniDocument.Line line : right.lines()) {
+                if (line.kind() == IniDocument.LineKind.ENTRY && right.entry(line.section(), line.key()) == line
+                        && left.get(line.section(), line.key()) == null) {
+                    differences.add(new Difference(file, Kind.ADDED, line.section(), line.key(), null, line.value()));
+                }
+            }
+            return differences;
+        }
+
+        /**
+         * Compares two files, or two folders with the INI files a scan with {@code options} finds in them; the
+         * scans and the file pairs run as parts on {@code lane}.
+         */
+        static Result compare(File left, File right, ScanOptions options, BackgroundExecutor.Lane lane) throws IOException {
+            long start = System.nanoTime();
+            if (left.isFile() && right.isFile()) {
+                return new Result(compare("", IniDocument.parse(left), IniDocument.parse(right)), 1, System.nanoTime() - start);
+            }
+            if (!left.isDirectory() || !right.isDirectory()) {
+                throw new IOException("Compare two files or two folders: " + left + ", " + right);
+            }
+            Map<String, File> leftFiles = scan(left.toPath(), options, lane);
+            Map<String, File> rightFiles = scan(right.toPath(), options, lane);
+            Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER); // Windows paths ignore case
+            names.addAll(leftFiles.keySet());
+            names.addAll(rightFiles.keySet());
+            List<List<Difference>> differences = lane.map(names, name -> {
+                File a = leftFiles.get(name);
+                File b = rightFiles.get(name);
+                if (a == null) {
+                    return List.of(new Difference(name, Kind.ADDED, null, null, null, b.getName()));
+                }
+                if (b == null) {
+                    return List.of(new Difference(name, Kind.REMOVED, null, null, a.getName(), null));
+                }
+                return compare(name, IniDocument.parse(a), IniDocument.parse(b));
+            });
+            return new Result(differences.stream().flatMap(List::stream).toList(), names.size(), System.nanoTime() - start);
+        }
+
+        /** The INI files below {@code root}, by their path relative to it. */
+        private static Map<String, File> scan(Path root, ScanOptions options, BackgroundExecutor.Lane lane) throws IOException {
+            Map<String, File> files = new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
+            new FolderScan(root, options, file -> files.put(root.relativize(file.toPath()).toString().replace('\\', '/'), file), () -> false)
+                    .run(lane);
+            return files;
+        }
+    }
+
+    /**
+     * Streaming access to INI files too large to hold in memory. {@link #read} walks a file through a
+     * {@link FileChannel} in fixed-size chunks and hands every line to a handler as soon as it is complete, and
+     * {@link #write} rewrites a file by copying the unchanged byte ranges straight from the old file, so both
+     * run in memory bounded by the chunk size and the longest line. The line structure is found on raw bytes,
+     * which needs an ASCII-compatible charset (UTF-8 or a single-byte code page, as INIs use).
+     */
+    static final class IniStream {
+        private static final int CHUNK_SIZE = 64 * 1024;
+
+        /**
+         * Receives each line, tokenized with line-relative spans, and the byte offset it starts at; returns
+         * false to stop reading. The tokenizer is reused for the next line.
+         */
+        interface LineHandler {
+            boolean line(IniTokenizer line, long byteOffset) throws IOException;
+        }
+
+        /** Replaces the bytes {@code [start, end)} of the file with {@code bytes}. */
+        record Patch(long start, long end, byte[] bytes) {}
+
+        /** Patches for a set of new values, and the keys that were found in the file (changed or not). */
+        record Plan(List<Patch> patches, Set<IniDocument.Key> found, FileTime lastModified, long size) {}
+
+        private IniStream() {
+        }
+
+        /** Reads {@code path}, which is in {@code format}; see {@link TextFormat#probe}. */
+        static void read(Path path, TextFormat format, LineHandler handler) throws IOException {
+            if (!format.isAsciiCompatible()) {
+                throw new IOException("Cannot stream " + path.getFileName() + " in " + format.charset().name());
+            }
+            CharsetDecoder decoder = format.charset().newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+                long bufferOffset = 0; // File position of buffer index 0
+                int skip = format.bomLength(); // The byte order mark is not part of the first line
+                boolean eof = false;
+                IniTokenizer tokenizer = new IniTokenizer();
+                while (true) {
+                    while (!eof && buffer.hasRemaining()) {
+                        if (channel.read(buffer) < 0) {
+                            eof = true;
+                        }
+                    }
+                    buffer.flip();
+                    byte[] bytes = buffer.array();
+                    int limit = buffer.limit();
+                    int lineStart = Math.min(skip, limit);
+                    skip = 0;
+                    while (lineStart < limit) {
+                        int end = lineStart;
+                        while (end < limit && bytes[end] != '\n' && bytes[end] != '\r') {
+                            end++;
+                        }
+                        if (!eof && (end == limit || (bytes[end] == '\r' && end + 1 == limit))) {
+                            break; // The line (or its \r\n) continues in the next chunk
+                        }
+                        tokenizer.feed(decode(bytes, lineStart, end, decoder));
+                        if (!handler.line(tokenizer, bufferOffset + lineStart)) {
+                            return;
+                        }
+                        lineStart = end + 1 < limit && bytes[end] == '\r' && bytes[end + 1] == '\n' ? end + 2 : end + 1;
+                    }
+                    if (eof) {
+                        return;
+                    }
+                    buffer.position(Math.min(lineStart, limit));
+                    buffer.compact();
+                    bufferOffset += lineStart;
+                    if (!buffer.hasRemaining()) {
+                        // A single line longer than the buffer
+                        buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                    }
+                }
+            }
+        }
+
+        /** Finds the byte spans to patch so that each key in {@code values} gets its new value. */
+        static Plan plan(Path path, TextFormat format, Map<IniDocument.Key, String> values) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            List<Patch> patches = new ArrayList<>();
+            Set<IniDocument.Key> found = new HashSet<>();
+            Charset charset = format.charset();
+            read(path, format, (line, byteOffset) -> {
+                if (line.kind() == IniDocument.LineKind.ENTRY) {
+                    IniDocument.Key key = new IniDocument.Key(line.section(), line.key());
+                    String value = values.get(key);
+                    if (value != null && found.add(key) && !value.equals(line.value())) { // First occurrence wins, as in IniDocument
+                        String text = line.text(); // The whole decoded line, not a copy
+                        patches.add(new Patch(byteOffset + encodedLength(text, line.valueStart(), charset),
+                                byteOffset + encodedLength(text, line.valueEnd(), charset), format.encode(value)));
+                    }
+                }
+                return found.size() < values.size() || values.isEmpty();
+            });
+            return new Plan(patches, found, attributes.lastModifiedTime(), attributes.size());
+        }
+
+        /**
+         * Applies a plan by streaming the old file into its replacement. Throws {@link FileChangedException}
+         * if the file changed since the plan was made.
+         */
+        static void write(Path path, Plan plan, int backups) throws IOException {
+            if (plan.patches().isEmpty()) {
+                return;
+            }
+            AtomicFileWriter.write(path, backups, target -> {
+                try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ)) {
+                    if (source.size() != plan.size() || !Files.getLastModifiedTime(path).equals(plan.lastModified())) {
+                        throw new FileChangedException(path.toFile());
+                    }
+                    long position = 0;
+                    for (Patch patch : plan.patches()) {
+                        transfer(source, position, patch.start(), target);
+                        AtomicFileWriter.writeFully(target, ByteBuffer.wrap(patch.bytes()));
+                        position = patch.end();
+                    }
+                    transfer(source, position, source.size(), target);
+                }
+            });
+        }
+
+        private static void transfer(FileChannel source, long from, long to, FileChannel target) throws IOException {
+            while (from < to) {
+                long copied = source.transferTo(from, to - from, target);
+                if (copied <= 0) {
+                    throw new IOException("Could not copy " + (to - from) + " bytes");
+                }
+                from += copied;
+            }
+        }
+
+        private static String decode(byte[] bytes, int start, int end, CharsetDecoder decoder) throws IOException {
+            boolean ascii = true;
+            for (int i = start; i < end && ascii; i++) {
+                ascii = bytes[i] >= 0;
+            }
+            if (ascii) {
+                return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+            }
+            return decoder.reset().decode(ByteBuffer.wrap(bytes, start, end - start)).toString();
+        }
+
+        /** Number of bytes the first {@code chars} characters of {@code text} take in {@code charset}. */
+        private static int encodedLength(String text, int chars, Charset charset) {
+            for (int i = 0; i < chars; i++) {
+                if (text.charAt(i) >= 0x80) {
+                    return text.substring(0, chars).getBytes(charset).length;
+                }
+            }
+            return chars;
+        }
+    }
+
+    /**
+     * On-disk cache of parsed line structure, one entry file per INI file. An entry records the file's
+     * {@link FileStamp} and is only used while the file still has exactly that size, timestamp and checksum.
+     * Text is not duplicated: each line is stored as a few varints (length, terminator, value and description
+     * spans) plus string-table ids for section names and keys, and strings are cut from the file content on
+     * lookup. {@link #prune} keeps the folder from growing without bound.
+     */
+    static final class IniCache {
+        private static final int MAGIC = 0x494E4943; // "INIC"
+        private static final int VERSION = 4; // 3: quoted values, 4: byte order mark not part of the text
+        private static final long MAX_BYTES = 64L << 20; // Least recently used entries beyond this are evicted
+        private static final int HEADER_BYTES = 8 * 1024; // Enough for the magic, version and source path
+
+        private final Path directory;
+
+        IniCache(Path directory) {
+            this.directory = directory;
+        }
+
+        /** The per-user cache in ~/.inieditor/cache. */
+        static IniCache inUserHome() {
+            return new IniCache(Path.of(System.getProperty("user.home"), ".inieditor", "cache"));
+        }
+
+        private Path entryPath(File file) {
+            String path = file.getAbsolutePath();
+            return directory.resolve(UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)) + ".bin");
+        }
+
+        /** Returns the cached lines for {@code file}, or null if there is no valid entry for this content. */
+        List<IniDocument.Line> lookup(File file, FileStamp stamp, String content) {
+            Path entry = entryPath(file);
+            if (!Files.isRegularFile(entry)) {
+                return null;
+            }
+            try {
+                ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(entry));
+                if (in.getInt() != MAGIC || in.getInt() != VERSION || !readString(in).equals(file.getAbsolutePath())
+                        || !new FileStamp(in.getLong(), in.getLong(), in.getLong()).equals(stamp)
+                        || in.getInt() != content.length()) {
+                    return null;
+                }
+                String[] strings = new String[readVarInt(in)];
+                for (int i = 0; i < strings.length; i++) {
+                    strings[i] = readString(in);
+                }
+                int lineCount = readVarInt(in);
+                List<IniDocument.Line> lines = new ArrayList<>(lineCount);
+                IniDocument.LineKind[] kinds = IniDocument.LineKind.values();
+                String section = "";
+                int offset = 0;
+                for (int number = 0; number < lineCount; number++) {
+                    int header = in.get() & 0xFF;
+                    IniDocument.LineKind kind = kinds[header >> 2];
+                    String text = content.substring(offset, offset + readVarInt(in));
+                    String key = null;
+                    String value = null;
+                    String description = null;
+                    int valueStart = -1;
+                    int valueEnd = -1;
+                    if (kind == IniDocument.LineKind.SECTION) {
+                        section = strings[readVarInt(in)];
+                    } else if (kind == IniDocument.LineKind.ENTRY) {
+                        key = strings[readVarInt(in)];
+                        valueStart = offset + readVarInt(in);
+                        valueEnd = valueStart + readVarInt(in);
+                        value = content.substring(valueStart, valueEnd);
+                    }
+                    if (kind == IniDocument.LineKind.ENTRY || kind == IniDocument.LineKind.COMMENT) {
+                        description = cutDescription(text, readVarInt(in) - 1);
+                    }
+                    lines.add(new IniDocument.Line(kind, number, offset, text, section, key, value, description, valueStart, valueEnd));
+                    offset += text.length() + (header & 3);
+                }
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis())); // Last use, for prune()
+                return lines;
+            } catch (IOException | RuntimeException e) {
+                return null; // A damaged or foreign entry is just a miss
+            }
+        }
+
+        /** Stores the line structure of {@code document}. Failures are ignored; the cache is only an optimization. */
+        void store(IniDocument document) {
+            FileStamp stamp = document.stamp();
+            if (stamp == null) {
+                return;
+            }
+            Map<String, Integer> stringIds = new HashMap<>();
+            List<String> strings = new ArrayList<>();
+            ByteArrayOutputStream lineBytes = new ByteArrayOutputStream(document.lines().size() * 6);
+            try (DataOutputStream out = new DataOutputStream(lineBytes)) {
+                String content = document.content();
+                for (IniDocument.Line line : document.lines()) {
+                    int end = line.offset() + line.text().length();
+                    int terminator = end < content.length() && content.charAt(end) == '\r' && end + 1 < content.length()
+                            && content.charAt(end + 1) == '\n' ? 2 : end < content.length() ? 1 : 0;
+                    out.writeByte(line.kind().ordinal() << 2 | terminator);
+                    writeVarInt(out, line.text().length());
+                    if (line.kind() == IniDocument.LineKind.SECTION) {
+                        writeVarInt(out, stringId(line.section(), stringIds, strings));
+                    } else if (line.kind() == IniDocument.LineKind.ENTRY) {
+                        writeVarInt(out, stringId(line.key(), stringIds, strings));
+                        writeVarInt(out, line.valueStart() - line.offset());
+                        writeVarInt(out, line.valueEnd() - line.valueStart());
+                    }
+                    if (line.kind() == IniDocument.LineKind.ENTRY || line.kind() == IniDocument.LineKind.COMMENT) {
+                        writeVarInt(out, line.description() == null ? 0 : line.description().length() + 1);
+                    }
+                }
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + lineBytes.size() + strings.size() * 16);
+                try (DataOutputStream entry = new DataOutputStream(bytes)) {
+                    entry.writeInt(MAGIC);
+                    entry.writeInt(VERSION);
+                    writeString(entry, document.file().getAbsolutePath());
+                    entry.writeLong(stamp.lastModified());
+                    entry.writeLong(stamp.size());
+                    entry.writeLong(stamp.checksum());
+                    entry.writeInt(content.length());
+                    writeVarInt(entry, strings.size());
+                    for (String string : strings) {
+                        writeString(entry, string);
+                    }
+                    writeVarInt(entry, document.lines().size());
+                    lineBytes.writeTo(entry);
+                }
+                Files.createDirectories(directory);
+                AtomicFileWriter.write(entryPath(document.file()), bytes.toByteArray(), 0);
+            } catch (IOException | RuntimeException e) {
+                // Not cached this time; the file is simply parsed again on the next load
+            }
+        }
+
+        /**
+         * Deletes the entries whose INI file no longer exists or that another version wrote, then the least
+         * recently used ones until the rest fit in {@value #MAX_BYTES} bytes. Returns the number deleted.
+         */
+        int prune() {
+            record Entry(Path path, long size, FileTime lastUsed) {}
+            List<Entry> kept = new ArrayList<>();
+            long total = 0;
+            int deleted = 0;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*.bin")) {
+                for (Path entry : entries) {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                        if (isOrphan(entry)) {
+                            Files.delete(entry);
+                            deleted++;
+                        } else {
+                            kept.add(new Entry(entry, attributes.size(), attributes.lastModifiedTime()));
+                            total += attributes.size();
+                        }
+                    } catch (IOException e) {
+                        // Gone or in use; the next prune looks at it again
+                    }
+                }
+            } catch (IOException e) {
+                return deleted; // No cache folder yet
+            }
+            kept.sort(Comparator.comparing(Entry::lastUsed));
+            for (int i = 0; i < kept.size() && total > MAX_BYTES; i++) {
+                try {
+                    Files.delete(kept.get(i).path());
+                    total -= kept.get(i).size();
+                    deleted++;
+                } catch (IOException e) {
+                    // Left for the next prune
+                }
+            }
+            return deleted;
+        }
+
+        /** Whether {@code entry} was written by another version, is damaged, or belongs to a file that is gone. */
+        private static boolean isOrphan(Path entry) throws IOException {
+            ByteBuffer in;
+            try (InputStream stream = Files.newInputStream(entry)) {
+                in = ByteBuffer.wrap(stream.readNBytes(HEADER_BYTES));
+            }
+            try {
+                return in.getInt() != MAGIC || in.getInt() != VERSION || !Files.isRegularFile(Path.of(readString(in)));
+            } catch (IOException | RuntimeException e) {
+                return true;
+            }
+        }
+
+        private static int stringId(String string, Map<String, Integer> stringIds, List<String> strings) {
+            return stringIds.computeIfAbsent(string, s -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+        }
+
+        /** Descriptions are the trimmed tail of their line, so only their length is stored. */
+        private static String cutDescription(String text, int length) {
+            if (length < 0) {
+                return null;
+            }
+            int end = text.length();
+            while (end > 0 && text.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            return text.substring(end - length, end);
+        }
+
+        private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte(value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        private static int readVarInt(ByteBuffer in) throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private static void writeString(DataOutputStream out, String string) throws IOException {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(ByteBuffer in) throws IOException {
+            int length = readVarInt(in);
+            String string = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return string;
+        }
+    }
+
+    /**
+     * Named snapshots of the values of every INI file in a folder, kept in ~/.inieditor/profiles as one small
+     * gzipped file each (section and key names are stored once). Applying a profile parses all of its files
+     * first and only then writes the ones with differing values, each atomically; if a write fails, the files
+     * already written are put back, so a profile is applied to all files or to none.
+     */
+    static final class ProfileStore {
+        private static final int MAGIC = 0x494E4950; // "INIP"
+        private static final int VERSION = 1;
+        private static final String EXTENSION = ".profile";
+        private static final Pattern VALID_NAME = Pattern.compile("[\\w .-]{1,64}");
+
+        /** One value of a profile: {@code file} is the path below the profile's folder, with '/' separators. */
+        record Setting(String file, String section, String key, String value) {}
+
+        record Profile(String name, String folder, List<Setting> settings) {}
+
+        /** What applying a profile did. {@code missing} lists files and keys the folder does not have. */
+        record ApplyResult(int filesChanged, int valuesChanged, List<String> missing, long elapsedNanos) {}
+
+        private final Path directory;
+
+        ProfileStore(Path directory) {
+            this.directory = directory;
+        }
+
+        static ProfileStore inUserHome() {
+            return new ProfileStore(Path.of(System.getProperty("user.home"), ".inieditor", "profiles"));
+        }
+
+        static boolean isValidName(String name) {
+            return VALID_NAME.matcher(name).matches() && !name.startsWith(".");
+        }
+
+        /** The stored profile names, sorted. */
+        List<String> names() throws IOException {
+            if (!Files.isDirectory(directory)) {
+                return List.of();
+            }
+            try (Stream<Path> entries = Files.list(directory)) {
+                return entries.map(path -> path.getFileName().toString())
+                        .filter(name -> name.endsWith(EXTENSION))
+                        .map(name -> name.substring(0, name.length() - EXTENSION.length()))
+                        .sorted(String.CASE_INSENSITIVE_ORDER)
+                        .toList();
+            }
+        }
+
+        /** Records the values of {@code files}, which lie below {@code folder}, as profile {@code name}; each file is read as a part on {@code lane}. */
+        Profile snapshot(String name, Path folder, List<File> files, BackgroundExecutor.Lane lane) throws IOException {
+            List<List<Setting>> settings = lane.map(files, file -> {
+                IniDocument document = IniDocument.parse(file);
+                String relative = folder.relativize(file.toPath()).toString().replace('\\', '/');
+                return document.lines().stream()
+                        .filter(line -> line.kind() == IniDocument.LineKind.ENTRY && document.entry(line.section(), line.key()) == line)
+                        .map(line -> new Setting(relative, line.section(), line.key(), line.value()))
+                        .toList();
+            });
+            Profile profile = new Profile(name, folder.toString(), settings.stream().flatMap(List::stream).toList());
+            save(profile);
+            return profile;
+        }
+
+        void save(Profile profile) throws IOException {
+            Map<String, Integer> stringIds = new HashMap<>();
+            List<String> strings = new ArrayList<>();
+            ByteArrayOutputStream settingBytes = new ByteArrayOutputStream(profile.settings().size() * 8);
+            try (DataOutputStream out = new DataOutputStream(settingBytes)) {
+                for (Setting setting : profile.settings()) {
+                    IniCache.writeVarInt(out, IniCache.stringId(setting.file(), stringIds, strings));
+                    IniCache.writeVarInt(out, IniCache.stringId(setting.section(), stringIds, strings));
+                    IniCache.writeVarInt(out, IniCache.stringId(setting.key(), stringIds, strings));
+                    IniCache.writeString(out, setting.value());
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(settingBytes.size() / 2 + 64);
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                IniCache.writeString(out, profile.folder());
+                IniCache.writeVarInt(out, strings.size());
+                for (String string : strings) {
+                    IniCache.writeString(out, string);
+                }
+                IniCache.writeVarInt(out, profile.settings().size());
+                settingBytes.writeTo(out);
+            }
+            Files.createDirectories(directory);
+            AtomicFileWriter.write(path(profile.name()), bytes.toByteArray(), 0);
+        }
+
+        Profile load(String name) throws IOException {
+            ByteBuffer in;
+            try (GZIPInputStream gzip = new GZIPInputStream(Files.newInputStream(path(name)))) {
+                in = ByteBuffer.wrap(gzip.readAllBytes());
+            }
+            try {
+                if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                    throw new IOException("Not a profile: " + name);
+                }
+                String folder = IniCache.readString(in);
+                String[] strings = new String[IniCache.readVarInt(in)];
+                for (int i = 0; i < strings.length; i++) {
+                    strings[i] = IniCache.readString(in);
+                }
+                int count = IniCache.readVarInt(in);
+                List<Setting> settings = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    settings.add(new Setting(strings[IniCache.readVarInt(in)], strings[IniCache.readVarInt(in)],
+                            strings[IniCache.readVarInt(in)], IniCache.readString(in)));
+                }
+                return new Profile(name, folder, settings);
+            } catch (RuntimeException e) {
+                throw new IOException("Damaged profile: " + name, e);
+            }
+        }
+
+        void delete(String name) throws IOException {
+            Files.deleteIfExists(path(name));
+        }
+
+        private Path path(String name) {
+            return directory.resolve(name + EXTENSION);
+        }
+
+        /** A file to rewrite: its bytes as read, and as they will be written. */
+        private record PendingFile(Path path, byte[] original, FileStamp stamp, byte[] updated, int edits) {}
+
+        /**
+         * Writes the values of {@code profile} into the matching files below {@code folder}; see the class comment.
+         * The files are read and patched as parts on {@code lane}, and written in order by the caller.
+         */
+        static ApplyResult apply(Profile profile, Path folder, int backups, BackgroundExecutor.Lane lane) throws IOException {
+            long start = System.nanoTime();
+            Map<String, List<Setting>> byFile = new LinkedHashMap<>();
+            for (Setting setting : profile.settings()) {
+                byFile.computeIfAbsent(setting.file(), f -> new ArrayList<>()).add(setting);
+            }
+            List<String> missing = Collections.synchronizedList(new ArrayList<>());
+            List<PendingFile> pending = lane.map(byFile.entrySet(), entry -> {
+                Path path = folder.resolve(entry.getKey());
+                if (!Files.isRegularFile(path)) {
+                    missing.add(entry.getKey());
+                    return null;
+                }
+                FileTime lastModified = Files.getLastModifiedTime(path);
+                byte[] original = Files.readAllBytes(path);
+                FileStamp stamp = FileStamp.of(lastModified, original);
+                TextFormat.Decoded decoded = TextFormat.decode(original);
+                IniDocument document = IniDocument.parse(path.toFile(), decoded.text(), stamp, decoded.format());
+                List<IniDocument.Edit> edits = new ArrayList<>();
+                for (Setting setting : entry.getValue()) {
+                    String value = document.get(setting.section(), setting.key());
+                    if (value == null) {
+                        missing.add(entry.getKey() + ": [" + setting.section() + "] " + setting.key());
+                    } else if (!value.equals(setting.value())) {
+                        edits.add(document.edit(setting.section(), setting.key(), setting.value()));
+                    }
+                }
+                return edits.isEmpty() ? null
+                        : new PendingFile(path, original, stamp, document.format().encodeFile(document.render(edits)), edits.size());
+            }).stream().filter(Objects::nonNull).toList();
+
+            for (PendingFile file : pending) {
+                if (!file.stamp().matches(file.path())) {
+                    throw new FileChangedException(file.path().toFile());
+                }
+            }
+            List<PendingFile> written = new ArrayList<>(pending.size());
+            try {
+                for (PendingFile file : pending) {
+                    AtomicFileWriter.write(file.path(), file.updated(), backups);
+                    written.add(file);
+                }
+            } catch (IOException e) {
+                for (PendingFile file : written) {
+                    try {
+                        AtomicFileWriter.write(file.path(), file.original(), 0);
+                    } catch (IOException restoreFailure) {
+                        e.addSuppressed(restoreFailure);
+                    }
+                }
+                throw e;
+            }
+            int values = pending.stream().mapToInt(PendingFile::edits).sum();
+            List<String> sortedMissing = new ArrayList<>(missing);
+            Collections.sort(sortedMissing);
+            return new ApplyResult(pending.size(), values, sortedMissing, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Inverted index over the section names, keys, values and descriptions of every parsed file. Each field is
+     * indexed as a whole and word by word (lower case), so prefix queries use a sorted range of the term
+     * dictionary while substring and regex queries only scan the distinct terms, not every line. Files are
+     * added or replaced as they are parsed, and single values are re-indexed as they are edited. Only the
+     * fields of each row are kept, not the documents, and a posting is a sorted array of row numbers, so the
+     * index grows with the number of terms rather than with file size squared.
+     */
+    static final class SearchIndex {
+        enum Mode { PREFIX, SUBSTRING, REGEX }
+
+        /** One matching line, with the values it had when the query ran. */
+        record Hit(File file, int line, String section, String key, String value) {}
+
+        /**
+         * The row fields of one file that hits show and re-indexing needs; keys are null on section rows. The
+         * stamp is that of the indexed document, or null if unknown.
+         */
+        private record Rows(FileStamp stamp, int[] lines, String[] sections, String[] keys, String[] values, String[] descriptions) {
+            static Rows of(IniDocument document) {
+                int count = 0;
+                for (IniDocument.Line line : document.lines()) {
+                    count += line.isRow() ? 1 : 0;
+                }
+                Rows rows = new Rows(document.stamp(), new int[count], new String[count], new String[count], new String[count], new String[count]);
+                int row = 0;
+                for (IniDocument.Line line : document.lines()) {
+                    if (line.isRow()) {
+                        boolean entry = line.kind() == IniDocument.LineKind.ENTRY;
+                        rows.lines[row] = line.number();
+                        rows.sections[row] = line.section();
+                        rows.keys[row] = entry ? line.key() : null;
+                        rows.values[row] = entry ? line.value() : null;
+                        rows.descriptions[row] = entry ? line.description() : null;
+                        row++;
+                    }
+                }
+                return rows;
+            }
+
+            Set<String> terms(int row) {
+                Set<String> terms = new LinkedHashSet<>();
+                if (keys[row] == null) {
+                    return SearchIndex.terms(sections[row], terms);
+                }
+                SearchIndex.terms(keys[row], terms);
+                SearchIndex.terms(values[row], terms);
+                return SearchIndex.terms(descriptions[row], terms);
+            }
+        }
+
+        /** Sorted, duplicate-free row numbers of one file. Rows are mostly added in order, which appends. */
+        private static final class Posting {
+            private int[] rows = new int[2];
+            private int size;
+
+            void add(int row) {
+                if (size > 0 && rows[size - 1] < row) {
+                    insert(size, row);
+                    return;
+                }
+                int at = Arrays.binarySearch(rows, 0, size, row);
+                if (at < 0) {
+                    insert(-at - 1, row);
+                }
+            }
+
+            private void insert(int at, int row) {
+                if (size == rows.length) {
+                    rows = Arrays.copyOf(rows, size * 2);
+                }
+                System.arraycopy(rows, at, rows, at + 1, size - at);
+                rows[at] = row;
+                size++;
+            }
+
+            /** Removes {@code row}; returns true if the posting is now empty. */
+            boolean remove(int row) {
+                int at = Arrays.binarySearch(rows, 0, size, row);
+                if (at >= 0) {
+                    System.arraycopy(rows, at + 1, rows, at, size - at - 1);
+                    size--;
+                }
+                return size == 0;
+            }
+        }
+
+        private final NavigableMap<String, Map<File, Posting>> postings = new TreeMap<>();
+        private final Map<File, Rows> files = new HashMap<>();
+
+        synchronized boolean contains(File file) {
+            return files.containsKey(file);
+        }
+
+        /** What {@code file} looked like on disk when it was indexed, or null if unknown or not indexed. */
+        synchronized FileStamp stamp(File file) {
+            Rows rows = files.get(file);
+            return rows != null ? rows.stamp() : null;
+        }
+
+        /** Adds {@code document}, replacing any earlier version of the same file and its edits. */
+        synchronized void put(IniDocument document) {
+            File file = document.file();
+            remove(file);
+            Rows rows = Rows.of(document);
+            files.put(file, rows);
+            for (int row = 0; row < rows.lines().length; row++) {
+                for (String term : rows.terms(row)) {
+                    post(term, file, row);
+                }
+            }
+        }
+
+        synchronized void remove(File file) {
+            Rows rows = files.remove(file);
+            if (rows == null) {
+                return;
+            }
+            for (int row = 0; row < rows.lines().length; row++) {
+                for (String term : rows.terms(row)) {
+                    unpost(term, file, row);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            postings.clear();
+            files.clear();
+        }
+
+        /** Re-indexes the value on line {@code line} of {@code file} after an edit. */
+        synchronized void updateValue(File file, int line, String value) {
+            Rows rows = files.get(file);
+            int row = rows != null ? Arrays.binarySearch(rows.lines(), line) : -1;
+            if (row < 0 || rows.values()[row] == null || rows.values()[row].equals(value)) {
+                return;
+            }
+            for (String term : terms(rows.values()[row], new LinkedHashSet<>())) {
+                unpost(term, file, row);
+            }
+            rows.values()[row] = value;
+            // Other fields of the line may share a term with the old value
+            for (String term : rows.terms(row)) {
+                post(term, file, row);
+            }
+        }
+
+        /** Returns up to {@code limit} hits, ordered by file and line. */
+        synchronized List<Hit> search(String query, Mode mode, int limit) {
+            String needle = query.toLowerCase(Locale.ROOT);
+            Map<File, BitSet> matches = new TreeMap<>();
+            Collection<Map<File, Posting>> candidates;
+            if (mode == Mode.PREFIX) {
+                candidates = postings.subMap(needle, true, needle + Character.MAX_VALUE, true).values();
+            } else {
+                Pattern pattern = mode == Mode.REGEX ? Pattern.compile(query, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE) : null;
+                candidates = new ArrayList<>();
+                for (Map.Entry<String, Map<File, Posting>> entry : postings.entrySet()) {
+                    if (pattern != null ? pattern.matcher(entry.getKey()).find() : entry.getKey().contains(needle)) {
+                        candidates.add(entry.getValue());
+                    }
+                }
+            }
+            for (Map<File, Posting> posting : candidates) {
+                for (Map.Entry<File, Posting> entry : posting.entrySet()) {
+                    BitSet rows = matches.computeIfAbsent(entry.getKey(), f -> new BitSet());
+                    Posting matched = entry.getValue();
+                    for (int i = 0; i < matched.size; i++) {
+                        rows.set(matched.rows[i]);
+                    }
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>();
+            for (Map.Entry<File, BitSet> entry : matches.entrySet()) {
+                Rows rows = files.get(entry.getKey());
+                BitSet matched = entry.getValue();
+                for (int row = matched.nextSetBit(0); row >= 0 && hits.size() < limit; row = matched.nextSetBit(row + 1)) {
+                    String key = rows.keys()[row];
+                    hits.add(new Hit(entry.getKey(), rows.lines()[row], rows.sections()[row], key != null ? key : "",
+                            key != null ? rows.values()[row] : ""));
+                }
+            }
+            return hits;
+        }
+
+        private void post(String term, File file, int row) {
+            postings.computeIfAbsent(term, t -> new HashMap<>()).computeIfAbsent(file, f -> new Posting()).add(row);
+        }
+
+        private void unpost(String term, File file, int row) {
+            Map<File, Posting> posting = postings.get(term);
+            Posting rows = posting != null ? posting.get(file) : null;
+            if (rows != null && rows.remove(row)) {
+                posting.remove(file);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        private static Set<String> terms(String field, Set<String> terms) {
+            if (field == null || field.isEmpty()) {
+                return terms;
+            }
+            String lower = field.toLowerCase(Locale.ROOT);
+            terms.add(lower);
+            int start = -1;
+            for (int i = 0; i <= lower.length(); i++) {
+                boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+                if (wordChar && start < 0) {
+                    start = i;
+                } else if (!wordChar && start >= 0) {
+                    terms.add(lower.substring(start, i));
+                    start = -1;
+                }
+            }
+            return terms;
+        }
+    }
+
+    /**
+     * How an INI file is encoded: its charset, whether it starts with a byte order mark, and the line
+     * terminator it uses. Detected from the bytes when a file is read and kept with its document, so a save
+     * writes back the same encoding and the bytes of unedited lines do not change. A BOM decides the charset.
+     * Without one, a plain ASCII file is taken as UTF-8, so any character typed into it can be saved, a file that
+     * is valid UTF-8 is UTF-8, and anything else is read in the native charset of the system (the ANSI code page
+     * the games use on Windows). Decoding is strict: a file that is not valid in that charset either is read as
+     * ISO-8859-1, which maps every byte to a character and back, so no byte is ever replaced on the way through.
+     */
+    record TextFormat(Charset charset, boolean bom, String lineSeparator) {
+        /** The format for text that did not come from a file. */
+        static final TextFormat DEFAULT = new TextFormat(StandardCharsets.UTF_8, false, System.lineSeparator());
+
+        /**
+         * The charset of the operating system, which {@link Charset#defaultCharset()} no longer is: that has been
+         * UTF-8 since Java 18 whatever the locale.
+         */
+        private static final Charset NATIVE = nativeCharset();
+
+        /** A file's format and its text, without the byte order mark. */
+        record Decoded(TextFormat format, String text) {}
+
+        private static final int PROBE_SIZE = 64 * 1024;
+        private static final int MAX_REUSED_CHARS = 1 << 20; // Larger files get a buffer of their own
+        private static final ThreadLocal<CharBuffer> CHARS = ThreadLocal.withInitial(() -> CharBuffer.allocate(16 * 1024));
+        private static final ThreadLocal<Map<Charset, CharsetDecoder>> DECODERS = ThreadLocal.withInitial(HashMap::new);
+
+        static Decoded decode(byte[] bytes) {
+            return decode(bytes, bytes.length, true);
+        }
+
+        /**
+         * Detects the format of {@code bytes[0, length)} and decodes them. With {@code complete} false the bytes
+         * are only the start of a file, and a character cut off at the end does not count against a charset.
+         */
+        static Decoded decode(byte[] bytes, int length, boolean complete) {
+            Charset bomCharset = bomCharset(bytes, length);
+            if (bomCharset != null) {
+                String text = decodeStrictly(bytes, bomLength(bomCharset), length, bomCharset, complete);
+                if (text != null) {
+                    return new Decoded(new TextFormat(bomCharset, true, lineSeparatorOf(text)), text);
+                }
+            }
+            if (isAscii(bytes, length)) {
+                String text = new String(bytes, 0, length, StandardCharsets.ISO_8859_1); // A plain copy for the common case
+                return new Decoded(new TextFormat(StandardCharsets.UTF_8, false, lineSeparatorOf(text)), text);
+            }
+            for (Charset charset : List.of(StandardCharsets.UTF_8, NATIVE, StandardCharsets.ISO_8859_1)) {
+                String text = decodeStrictly(bytes, 0, length, charset, complete);
+                if (text != null) {
+                    return new Decoded(new TextFormat(charset, false, lineSeparatorOf(text)), text);
+                }
+            }
+            throw new IllegalStateException("ISO-8859-1 decodes any byte");
+        }
+
+        /** Detects the format of {@code path} from its first {@value #PROBE_SIZE} bytes, for streamed access. */
+        static TextFormat probe(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(PROBE_SIZE);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Fill the buffer or reach the end
+                }
+                return decode(buffer.array(), buffer.position(), buffer.hasRemaining()).format();
+            }
+        }
+
+        /** Encodes a whole file: the byte order mark, if the file had one, then {@code content}. */
+        byte[] encodeFile(String content) throws IOException {
+            byte[] encoded = encode(content);
+            if (!bom) {
+                return encoded;
+            }
+            int bomLength = bomLength(charset);
+            byte[] bytes = new byte[bomLength + encoded.length];
+            ByteBuffer.wrap(bytes).put(bomBytes(charset)).put(encoded);
+            return bytes;
+        }
+
+        /**
+         * Encodes {@code text} without a byte order mark. A character the charset has no code for is an error,
+         * not a silent {@code ?}, so a save never writes something other than what the table shows.
+         */
+        byte[] encode(String text) throws IOException {
+            if (isAsciiCompatible() && isAscii(text)) {
+                return text.getBytes(StandardCharsets.ISO_8859_1);
+            }
+            CharsetEncoder encoder = charset.newEncoder(); // Reports unmappable characters rather than replacing them
+            try {
+                ByteBuffer encoded = encoder.encode(CharBuffer.wrap(text));
+                return Arrays.copyOfRange(encoded.array(), encoded.arrayOffset(), encoded.arrayOffset() + encoded.limit());
+            } catch (CharacterCodingException e) {
+                CharsetEncoder check = charset.newEncoder(); // The failed encoder cannot be reused
+                int codePoint = text.codePoints().filter(c -> !check.canEncode(new String(Character.toChars(c)))).findFirst().orElse('?');
+                throw new IOException("'" + new String(Character.toChars(codePoint)) + "' cannot be stored in " + charset.name()
+                        + ", the encoding of this file", e);
+            }
+        }
+
+        /** Like "UTF-8 with BOM, CRLF", for the tab tooltip. */
+        String describe() {
+            String terminator = switch (lineSeparator) {
+                case "\r\n" -> "CRLF";
+                case "\r" -> "CR";
+                default -> "LF";
+            };
+            return charset.name() + (bom ? " with BOM" : "") + ", " + terminator;
+        }
+
+        /** Whether line structure can be found on the raw bytes, as {@link IniStream} does. */
+        boolean isAsciiCompatible() {
+            String probe = "[]=;/\r\n \t";
+            return Arrays.equals(probe.getBytes(charset), probe.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /** Number of bytes the byte order mark takes at the start of the file, 0 if there is none. */
+        int bomLength() {
+            return bom ? bomLength(charset) : 0;
+        }
+
+        private static Charset nativeCharset() {
+            String name = System.getProperty("native.encoding");
+            try {
+                return name != null ? Charset.forName(name) : StandardCharsets.ISO_8859_1;
+            } catch (IllegalArgumentException e) { // Unknown or unsupported name
+                return StandardCharsets.ISO_8859_1;
+            }
+        }
+
+        private static String decodeStrictly(byte[] bytes, int offset, int length, Charset charset, boolean complete) {
+            CharsetDecoder decoder = DECODERS.get().computeIfAbsent(charset, Charset::newDecoder).reset(); // Reports malformed input
+            int capacity = (int) Math.ceil((length - offset) * (double) decoder.maxCharsPerByte()) + 1;
+            CharBuffer chars = CHARS.get();
+            if (chars.capacity() < capacity) {
+                chars = CharBuffer.allocate(capacity);
+                if (capacity <= MAX_REUSED_CHARS) {
+                    CHARS.set(chars);
+                }
+            }
+            chars.clear();
+            CoderResult result = decoder.decode(ByteBuffer.wrap(bytes, offset, length - offset), chars, complete);
+            if (result.isError() || complete && decoder.flush(chars).isError()) {
+                return null;
+            }
+            return chars.flip().toString();
+        }
+
+        private static Charset bomCharset(byte[] bytes, int length) {
+            if (length >= 3 && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF) {
+                return StandardCharsets.UTF_8;
+            }
+            if (length >= 2 && bytes[0] == (byte) 0xFF && bytes[1] == (byte) 0xFE) {
+                return StandardCharsets.UTF_16LE;
+            }
+            if (length >= 2 && bytes[0] == (byte) 0xFE && bytes[1] == (byte) 0xFF) {
+                return StandardCharsets.UTF_16BE;
+            }
+            return null;
+        }
+
+        private static int bomLength(Charset charset) {
+            return charset.equals(StandardCharsets.UTF_8) ? 3 : 2;
+        }
+
+        private static byte[] bomBytes(Charset charset) {
+            if (charset.equals(StandardCharsets.UTF_8)) {
+                return new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+            }
+            return charset.equals(StandardCharsets.UTF_16LE) ? new byte[] {(byte) 0xFF, (byte) 0xFE} : new byte[] {(byte) 0xFE, (byte) 0xFF};
+        }
+
+        private static boolean isAscii(byte[] bytes, int length) {
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isAscii(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) >= 0x80) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** The terminator of the first line; the platform's if there is only one line. */
+        private static String lineSeparatorOf(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\n') {
+                    return "\n";
+                }
+                if (c == '\r') {
+                    return i + 1 < text.length() && text.charAt(i + 1) == '\n' ? "\r\n" : "\r";
+                }
+            }
+            return System.lineSeparator();
+        }
+    }
+
+    /**
+     * Size, modification time and checksum of a file's bytes, used to tell whether it changed on disk.
+     */
+    record FileStamp(long lastModified, long size, long checksum) {
+        static FileStamp of(FileTime lastModified, byte[] bytes) {
+            return new FileStamp(lastModified.toMillis(), bytes.length, checksum(bytes));
+        }
+
+        static long checksum(byte[] bytes) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            return crc.getValue();
+        }
+
+        /** Whether {@code path} still has this content. Only reads the file when its timestamp moved. */
+        boolean matches(Path path) throws IOException {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+            if (attributes.size() != size) {
+                return false;
+            }
+            return attributes.lastModifiedTime().toMillis() == lastModified || checksum(Files.readAllBytes(path)) == checksum;
+        }
+    }
+
+    /** Thrown when a save would overwrite changes made to the file by another program. */
+    static class FileChangedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        FileChangedException(File file) {
+            super(file.getName() + " was changed on disk since it was loaded");
+        }
+    }
+
+    /**
+     * Crash-safe file replacement: the new content is written to a temporary file next to the target, forced
+     * to disk and then moved over the original, so the target is always either the old or the new version.
+     * The replacement gets the target's permissions, and a read-only target is refused rather than replaced.
+     */
+    static final class AtomicFileWriter {
+        private AtomicFileWriter() {
+        }
+
+        /** Writes the new content of a file into the channel of its temporary replacement. */
+        interface Content {
+            void writeTo(FileChannel channel) throws IOException;
+        }
+
+        /** Replaces {@code target} with {@code bytes}, first keeping up to {@code backups} rotated .bak copies. */
+        static void write(Path target, byte[] bytes, int backups) throws IOException {
+            write(target, backups, channel -> writeFully(channel, ByteBuffer.wrap(bytes)));
+        }
+
+        /** Replaces {@code target} with whatever {@code content} writes, keeping up to {@code backups} .bak copies. */
+        static void write(Path target, int backups, Content content) throws IOException {
+            Path directory = target.toAbsolutePath().getParent();
+            boolean exists = Files.exists(target);
+            if (exists && isReadOnly(target)) {
+                throw new IOException(target.getFileName() + " is read-only");
+            }
+            Path temp = Files.createTempFile(directory, "." + target.getFileName(), ".tmp");
+            try {
+                if (exists) {
+                    copyPermissions(target, temp); // A temp file is created owner-only
+                }
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    content.writeTo(channel);
+                    channel.force(true);
+                }
+                if (backups > 0 && exists) {
+                    rotateBackups(target, backups);
+                }
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        /** Whether the owner may not write {@code path}, by its POSIX permissions or its DOS read-only flag. */
+        private static boolean isReadOnly(Path path) throws IOException {
+            PosixFileAttributeView posix = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+            if (posix != null) {
+                return !posix.readAttributes().permissions().contains(PosixFilePermission.OWNER_WRITE);
+            }
+            DosFileAttributeView dos = Files.getFileAttributeView(path, DosFileAttributeView.class);
+            return dos != null && dos.readAttributes().isReadOnly();
+        }
+
+        private static void copyPermissions(Path from, Path to) throws IOException {
+            PosixFileAttributeView posix = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+            if (posix != null) {
+                Files.setPosixFilePermissions(to, posix.readAttributes().permissions());
+                return;
+            }
+            DosFileAttributeView dos = Files.getFileAttributeView(from, DosFileAttributeView.class);
+            if (dos != null) {
+                DosFileAttributes attributes = dos.readAttributes();
+                DosFileAttributeView copy = Files.getFileAttributeView(to, DosFileAttributeView.class);
+                copy.setHidden(attributes.isHidden());
+                copy.setArchive(attributes.isArchive());
+            }
+        }
+
+        static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        /** Shifts name.bak to name.bak2 and so on, dropping the oldest, then copies the target to name.bak. */
+        private static void rotateBackups(Path target, int backups) throws IOException {
+            Files.deleteIfExists(backupPath(target, backups));
+            for (int i = backups - 1; i >= 1; i--) {
+                Path backup = backupPath(target, i);
+                if (Files.exists(backup)) {
+                    Files.move(backup, backupPath(target, i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.copy(target, backupPath(target, 1), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+
+        private static Path backupPath(Path target, int generation) {
+            return target.resolveSibling(target.getFileName() + (generation == 1 ? ".bak" : ".bak" + generation));
+        }
+    }
+
+    private class LoadINIFileWorker extends SwingWorker<IniDocument, List<IniDocument.Line>> {
+        private static final int MAX_PENDING_BATCHES = 2; // Batches the parser may run ahead of the EDT
+
+        private final File file;
+        private final JTable table;
+        private final IniTableModel model;
+        private final Semaphore batchPermits = new Semaphore(MAX_PENDING_BATCHES);
+        private final long startNanos = System.nanoTime();
+        private long firstRowNanos = -1;
+        private long insertNanos; // EDT time spent adding rows
+        private int rowCount;
+        private final Diagnostics.TabLoadEvent event = new Diagnostics.TabLoadEvent();
+
+        public LoadINIFileWorker(File file, JTable table) {
+            this.file = file;
+            this.table = table;
+            this.model = (IniTableModel) table.getModel();
+        }
+
+        @Override
+        protected IniDocument doInBackground() throws Exception {
+            event.begin();
+            long size = Files.size(file.toPath());
+            if (size > MAX_TAB_FILE_SIZE) {
+                throw new IOException(String.format("%s is too large to open in a tab (%d MB); use the command line, which streams it",
+                        file.getName(), size >> 20));
+            }
+            IniDocument document = IniDocument.load(file, prefs.getBoolean(PREF_KEY_PARSE_CACHE, true) ? parseCache : null);
+            if (isCancelled()) {
+                return null; // The folder changed while the file was read
+            }
+            searchIndex.put(document);
+
+            List<IniDocument.Line> batch = new ArrayList<>(ROW_BATCH_SIZE);
+            for (IniDocument.Line line : document.lines()) {
+                if (!line.isRow()) {
+                    continue;
+                }
+                batch.add(line);
+                if (batch.size() == ROW_BATCH_SIZE) {
+                    batchPermits.acquire();
+                    publish(batch);
+                    batch = new ArrayList<>(ROW_BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batchPermits.acquire();
+                publish(batch);
+            }
+            return document;
+        }
+
+        @Override
+        protected void process(List<List<IniDocument.Line>> batches) {
+            if (isCancelled()) {
+                return; // The tab is gone; the worker stops at its next batch
+            }
+            long start = System.nanoTime();
+            for (List<IniDocument.Line> batch : batches) {
+                model.addRows(batch);
+                rowCount += batch.size();
+                batchPermits.release();
+            }
+            long end = System.nanoTime();
+            insertNanos += end - start;
+            if (firstRowNanos < 0) {
+                firstRowNanos = end;
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            String status;
+            try {
+                IniDocument document = get();
+                model.setDocument(document);
+                IniTab tab = (IniTab) SwingUtilities.getAncestorOfClass(IniTab.class, table);
+                if (tab != null) {
+                    tab.revealPending();
+                }
+                long totalMillis = (System.nanoTime() - startNanos) / 1_000_000;
+                long firstRowMillis = firstRowNanos < 0 ? totalMillis : (firstRowNanos - startNanos) / 1_000_000;
+                status = String.format("%s - %s, %d keys, first row in %d ms, loaded in %d ms",
+                        file.getAbsolutePath(), document.format().describe(), document.entryCount(), firstRowMillis, totalMillis);
+            } catch (InterruptedException | ExecutionException e) {
+                status = "Error loading file: " + e.getMessage();
+                JOptionPane.showMessageDialog(INIEditor.this, status, "Error", JOptionPane.ERROR_MESSAGE);
+            }
+            int index = tabbedPane.indexOfComponent(SwingUtilities.getAncestorOfClass(IniTab.class, table));
+            if (index != -1) {
+                tabbedPane.setToolTipTextAt(index, status);
+            }
+
+            event.end();
+            Diagnostics.record(Diagnostics.Metric.ROWS_ADDED, rowCount);
+            Diagnostics.record(Diagnostics.Metric.ROW_INSERT_TIME, insertNanos);
+            event.file = file.getAbsolutePath();
+            event.rows = rowCount;
+            event.firstRow = (firstRowNanos < 0 ? System.nanoTime() : firstRowNanos) - startNanos;
+            event.insertTime = insertNanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Reloads a file that changed on disk and merges it into its tab, keeping unsaved edits.
+     */
+    private class ReloadINIFileWorker extends SwingWorker<IniDocument, Void> {
+        private final File file;
+        private final IniTableModel model;
+        private final FileStamp stamp;
+        private final Runnable merged;
+
+        /** Must be created on the EDT. */
+        public ReloadINIFileWorker(File file, IniTableModel model) {
+            this(file, model, () -> {
+            });
+        }
+
+        /** Runs {@code merged} on the EDT once the model holds the file as it is on disk now. */
+        public ReloadINIFileWorker(File file, IniTableModel model, Runnable merged) {
+            this.file = file;
+            this.model = model;
+            this.stamp = model.document().stamp();
+            this.merged = merged;
+        }
+
+        /** Returns the new document, or null if the file still matches the loaded one. */
+        @Override
+        protected IniDocument doInBackground() throws Exception {
+            if (stamp != null && stamp.matches(file.toPath())) {
+                return null;
+            }
+            IniDocument reloaded = IniDocument.load(file, prefs.getBoolean(PREF_KEY_PARSE_CACHE, true) ? parseCache : null);
+            if (!isCancelled()) {
+                searchIndex.put(reloaded);
+            }
+            return reloaded;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                IniDocument reloaded = get();
+                if (model.document() == null) {
+                    return;
+                }
+                if (reloaded != null) {
+                    int conflicts = model.merge(reloaded);
+                    statusLabel.setText(conflicts == 0
+                            ? "Reloaded " + file.getName() + " after it changed on disk"
+                            : "Reloaded " + file.getName() + " after it changed on disk; " + conflicts + " of your unsaved edits conflict (highlighted)");
+                }
+                merged.run();
+            } catch (InterruptedException | ExecutionException e) {
+                statusLabel.setText("Could not reload " + file.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void saveAllINIFiles() {
+        List<SaveTask> tasks = new ArrayList<>();
+        for (IniTab tab : documents.all()) {
+            if (tab.table() != null) {
+                tasks.add(new SaveTask(tab.file, tab.table(), backupCount()));
+            }
+        }
+        if (!confirmInvalidValues(documents.all())) {
+            return;
+        }
+        background.submitUntracked(new SaveAllWorker(tasks), BackgroundExecutor.Priority.INTERACTIVE);
+    }
+
+    /** Number of rotated .bak copies kept per saved file; 0 disables backups. */
+    private int backupCount() {
+        return Math.max(0, prefs.getInt(PREF_KEY_BACKUP_COUNT, DEFAULT_BACKUP_COUNT));
+    }
+
+    private void saveCurrentTab() {
+        if (tabbedPane.getSelectedComponent() instanceof IniTab tab && tab.table() != null) {
+            SaveTask task = new SaveTask(tab.file, tab.table(), backupCount());
+            if (confirmInvalidValues(List.of(tab))) {
+                background.submitUntracked(new SavePanelFieldsWorker(task), BackgroundExecutor.Priority.INTERACTIVE);
+            }
+        }
+    }
+
+    /**
+     * Asks before saving edited values that do not fit their inferred type, which only the editor checks;
+     * values set by a patch, undo or profile bypass it. Returns true if there are none or the user goes ahead.
+     */
+    private boolean confirmInvalidValues(Collection<IniTab> tabs) {
+        List<String> invalid = new ArrayList<>();
+        for (IniTab tab : tabs) {
+            for (int row : tab.model.invalidRows()) {
+                IniDocument.Line line = tab.model.lineAt(row);
+                invalid.add(tab.file.getName() + ": [" + line.section() + "] " + line.key() + " = " + tab.model.valueAt(row)
+                        + " (expected " + tab.model.fieldAt(row).describe() + ")");
+            }
+        }
+        if (invalid.isEmpty()) {
+            return true;
+        }
+        int shown = Math.min(invalid.size(), 10);
+        String message = "These values do not look like the others of their key:\n" + String.join("\n", invalid.subList(0, shown))
+                + (shown < invalid.size() ? "\n... and " + (invalid.size() - shown) + " more" : "") + "\n\nSave anyway?";
+        return JOptionPane.showConfirmDialog(this, message, "Unexpected Values", JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE) == JOptionPane.YES_OPTION;
+    }
+
+    /**
+     * Pending edits of one tab, captured on the EDT so the save itself can run on any thread.
+     */
+    private static final class SaveTask {
+        private final File file;
+        private final IniTableModel model;
+        private final IniDocument document;
+        private final List<IniDocument.Edit> edits;
+        private final int backups;
+
+        SaveTask(File file, JTable table, int backups) {
+            this.file = file;
+            this.backups = backups;
+            if (table.isEditing() && !table.getCellEditor().stopCellEditing()) {
+                table.getCellEditor().cancelCellEditing();
+            }
+            this.model = (IniTableModel) table.getModel();
+            this.document = model.document();
+            this.edits = model.pendingEdits();
+        }
+
+        IniDocument save() throws IOException {
+            if (document == null) {
+                throw new IllegalStateException("File is still loading");
+            }
+            Diagnostics.SaveEvent event = new Diagnostics.SaveEvent();
+            event.begin();
+            long start = System.nanoTime();
+            IniDocument saved = null;
+            try {
+                saved = document.write(edits, backups);
+                return saved;
+            } finally {
+                event.end();
+                Diagnostics.record(Diagnostics.Metric.SAVE_TIME, System.nanoTime() - start);
+                if (saved == null) {
+                    Diagnostics.record(Diagnostics.Metric.SAVE_FAILURES, 1);
+                } else if (saved != document) { // The same document back means nothing was written
+                    Diagnostics.record(Diagnostics.Metric.FILES_SAVED, 1);
+                    Diagnostics.record(Diagnostics.Metric.BYTES_WRITTEN, saved.stamp().size());
+                }
+                event.file = file.getAbsolutePath();
+                event.edits = edits.size();
+                event.bytes = saved != null && saved != document ? saved.stamp().size() : 0;
+                event.succeeded = saved != null;
+                event.commit();
+            }
+        }
+    }
+
+    /** Indexes a saved document for search, unless its tab was closed or the folder changed during the save. */
+    private void indexSaved(SaveTask task, IniDocument saved) {
+        IniTab tab = documents.get(task.file);
+        if (tab != null && tab.model == task.model) {
+            searchIndex.put(saved);
+        }
+    }
+
+    /** Saves the edits of {@code task}'s tab again after its file was reloaded and merged, if the tab is still open. */
+    private void saveMerged(SaveTask task) {
+        IniTab tab = documents.get(task.file);
+        if (tab != null && tab.model == task.model && tab.table() != null) {
+            background.submitUntracked(new SavePanelFieldsWorker(new SaveTask(task.file, tab.table(), task.backups)),
+                    BackgroundExecutor.Priority.INTERACTIVE);
+        }
+    }
+
+    private class SavePanelFieldsWorker extends SwingWorker<IniDocument, Void> {
+        private final SaveTask task;
+
+        public SavePanelFieldsWorker(SaveTask task) {
+            this.task = task;
+        }
+
+        @Override
+        protected IniDocument doInBackground() throws Exception {
+            return task.save();
+        }
+
+        @Override
+        protected void done() {
+            try {
+                IniDocument saved = get();
+                task.model.rebase(saved);
+                indexSaved(task, saved);
+                String message = task.edits.isEmpty() ? "No changes to save: " : "File saved successfully: ";
+                JOptionPane.showMessageDialog(INIEditor.this, message + task.file.getName(), "Success", JOptionPane.INFORMATION_MESSAGE);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof FileChangedException changed) {
+                    int choice = JOptionPane.showConfirmDialog(INIEditor.this, changed.getMessage()
+                                    + ".\nReload it and save your edits over the changes to the same keys? Other changes are kept.",
+                            "File Changed", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+                    if (choice == JOptionPane.YES_OPTION) {
+                        // Only the user's edits win: merge the file as it is now, then save the edits against it
+                        background.submitUntracked(new ReloadINIFileWorker(task.file, task.model, () -> saveMerged(task)),
+                                BackgroundExecutor.Priority.INTERACTIVE);
+                    }
+                } else {
+                    JOptionPane.showMessageDialog(INIEditor.this, "Error saving file: " + e.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            } catch (InterruptedException e) {
+                JOptionPane.showMessageDialog(INIEditor.this, "Error saving file: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * Saves every modified tab as one background job: untouched files are skipped, the rest are written in
+     * parallel as parts on the background pool, and the outcome is reported in a single dialog.
+     */
+    private class SaveAllWorker extends SwingWorker<List<SaveAllWorker.Result>, Void> {
+        /** Outcome of one task: the saved document, or the error that stopped it. */
+        record Result(SaveTask task, IniDocument saved, Throwable error) {}
+
+        private final List<SaveTask> dirtyTasks = new ArrayList<>();
+        private final int unchangedCount;
+        private long elapsedMillis;
+
+        /** Must be created on the EDT, with tasks captured on the EDT. */
+        public SaveAllWorker(List<SaveTask> tasks) {
+            for (SaveTask task : tasks) {
+                if (!task.edits.isEmpty()) {
+                    dirtyTasks.add(task);
+                }
+            }
+            this.unchangedCount = tasks.size() - dirtyTasks.size();
+        }
+
+        @Override
+        protected List<Result> doInBackground() throws Exception {
+            long start = System.nanoTime();
+            // Untracked: a save that was started must finish even if the folder is switched meanwhile
+            List<Result> results = background.lane(BackgroundExecutor.Priority.INTERACTIVE, false).map(dirtyTasks, task -> {
+                try {
+                    return new Result(task, task.save(), null);
+                } catch (IOException | RuntimeException e) {
+                    return new Result(task, null, e);
+                }
+            });
+            elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            return results;
+        }
+
+        @Override
+        protected void done() {
+            List<Result> results;
+            try {
+                results = get();
+            } catch (InterruptedException | ExecutionException e) {
+                JOptionPane.showMessageDialog(INIEditor.this, "Error saving files: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            int saved = 0;
+            StringBuilder errors = new StringBuilder();
+            for (Result result : results) {
+                if (result.error() == null) {
+                    result.task().model.rebase(result.saved());
+                    indexSaved(result.task(), result.saved());
+                    saved++;
+                } else {
+                    errors.append("\n").append(result.task().file.getName()).append(": ").append(result.error().getMessage());
+                }
+            }
+
+            String summary = String.format("Saved %d file(s) in %d ms, %d unchanged.", saved, elapsedMillis, unchangedCount);
+            if (errors.length() > 0) {
+                JOptionPane.showMessageDialog(INIEditor.this, summary + "\n\nFailed:" + errors, "Error", JOptionPane.ERROR_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(INIEditor.this, summary, "Success", JOptionPane.INFORMATION_MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * Process-wide timings and counters for scanning, loading, saving and the EDT, shown in the diagnostics
+     * dialog and exported as a session report. The same operations are also emitted as JFR events (category
+     * "INI Editor"), which cost nothing unless a recording is running, e.g. with
+     * {@code java -XX:StartFlightRecording=filename=editor.jfr INIEditor}. The EDT is only monitored once the
+     * diagnostics dialog has been opened, or from the start with {@code -Dinieditor.diagnostics=true}.
+     */
+    static final class Diagnostics {
+        private static final long EDT_STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+        private static boolean edtMonitorInstalled; // Only touched on the EDT
+
+        enum Unit { COUNT, BYTES, NANOS }
+
+        enum Metric {
+            FOLDERS_SCANNED("Folders scanned", Unit.COUNT),
+            INI_FILES_FOUND("INI files found", Unit.COUNT),
+            SCAN_TIME("Scan time", Unit.NANOS),
+            FILES_READ("Files read", Unit.COUNT),
+            BYTES_READ("Bytes read", Unit.BYTES),
+            READ_TIME("Disk read time", Unit.NANOS),
+            FILES_PARSED("Files parsed", Unit.COUNT),
+            CACHE_HITS("Parse cache hits", Unit.COUNT),
+            LINES_PARSED("Lines parsed", Unit.COUNT),
+            PARSE_TIME("Parse time", Unit.NANOS),
+            TABS_CREATED("Tabs created", Unit.COUNT),
+            TABLES_CREATED("Tables created", Unit.COUNT),
+            ROWS_ADDED("Rows added", Unit.COUNT),
+            ROW_INSERT_TIME("Row insert time (EDT)", Unit.NANOS),
+            LAYOUT_TIME("Table layout time (EDT)", Unit.NANOS),
+            FILES_SAVED("Files saved", Unit.COUNT),
+            SAVE_FAILURES("Save failures", Unit.COUNT),
+            BYTES_WRITTEN("Bytes written", Unit.BYTES),
+            SAVE_TIME("Save time", Unit.NANOS),
+            EDT_EVENTS("EDT events dispatched", Unit.COUNT),
+            EDT_BUSY_TIME("EDT busy time", Unit.NANOS),
+            EDT_QUEUE_WAIT("EDT queue wait", Unit.NANOS),
+            EDT_STALLS("EDT stalls (waited >= 100 ms)", Unit.COUNT),
+            EDT_LONGEST_WAIT("Longest EDT queue wait", Unit.NANOS);
+
+            final String label;
+            final Unit unit;
+
+            Metric(String label, Unit unit) {
+                this.label = label;
+                this.unit = unit;
+            }
+
+            String format(long value) {
+                return switch (unit) {
+                    case COUNT -> String.format("%,d", value);
+                    case BYTES -> String.format("%,.1f KB", value / 1024.0);
+                    case NANOS -> String.format("%,.1f ms", value / 1e6);
+                };
+            }
+        }
+
+        private static final Map<Metric, LongAccumulator> VALUES = new EnumMap<>(Metric.class);
+        private static final LocalDateTime SESSION_START = LocalDateTime.now().withNano(0);
+
+        static {
+            for (Metric metric : Metric.values()) {
+                VALUES.put(metric, metric == Metric.EDT_LONGEST_WAIT ? new LongAccumulator(Math::max, 0) : new LongAccumulator(Long::sum, 0));
+            }
+        }
+
+        private Diagnostics() {
+        }
+
+        /** Adds {@code value} to a metric; the longest-wait metric keeps the maximum instead. */
+        static void record(Metric metric, long value) {
+            VALUES.get(metric).accumulate(value);
+        }
+
+        static long get(Metric metric) {
+            return VALUES.get(metric).get();
+        }
+
+        static void reset() {
+            VALUES.values().forEach(LongAccumulator::reset);
+        }
+
+        /** A plain-text report of every metric and the JVM it ran in. */
+        static String report() {
+            Runtime runtime = Runtime.getRuntime();
+            StringBuilder report = new StringBuilder();
+            report.append("INI Editor session report, ").append(LocalDateTime.now().withNano(0)).append('\n');
+            report.append("Session started ").append(SESSION_START).append('\n');
+            report.append("Java ").append(System.getProperty("java.version")).append(", ").append(System.getProperty("os.name"))
+                    .append(", ").append(runtime.availableProcessors()).append(" CPUs, heap ")
+                    .append((runtime.totalMemory() - runtime.freeMemory()) >> 20).append(" of ").append(runtime.maxMemory() >> 20)
+                    .append(" MB used\n\n");
+            for (Metric metric : Metric.values()) {
+                report.append(String.format("%-26s %16s%n", metric.label, metric.format(get(metric))));
+            }
+            return report.toString();
+        }
+
+        /** Whether the EDT should be monitored from startup, set with {@code -Dinieditor.diagnostics=true}. */
+        static boolean enabledAtStartup() {
+            return Boolean.getBoolean("inieditor.diagnostics");
+        }
+
+        /**
+         * Starts monitoring the EDT; later calls do nothing. Every posted event is stamped, and when its dispatch
+         * starts the time it waited in the queue is recorded, since that is the delay the user feels. An event
+         * that waited 100 ms or more counts as a stall. The time spent dispatching is
+         * recorded as busy time, except for an event that runs a nested loop (a modal dialog), whose time goes to
+         * the events dispatched inside it. Must be called on the EDT.
+         */
+        static void installEdtMonitor() {
+            if (edtMonitorInstalled) {
+                return;
+            }
+            edtMonitorInstalled = true;
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EventQueue() {
+                // Weak, since an event coalesced into an earlier one is never dispatched
+                private final Map<AWTEvent, Long> postedAt = Collections.synchronizedMap(new WeakHashMap<>());
+                private int depth;
+                private boolean pumped; // The innermost running dispatch has dispatched nested events
+
+                @Override
+                public void postEvent(AWTEvent event) {
+                    postedAt.put(event, System.nanoTime());
+                    super.postEvent(event);
+                }
+
+                @Override
+                protected void dispatchEvent(AWTEvent event) {
+                    long start = System.nanoTime();
+                    Long posted = postedAt.remove(event);
+                    record(Metric.EDT_EVENTS, 1);
+                    if (posted != null) { // Events queued before the monitor was installed have no stamp
+                        long wait = start - posted;
+                        record(Metric.EDT_QUEUE_WAIT, wait);
+                        record(Metric.EDT_LONGEST_WAIT, wait);
+                        if (wait >= EDT_STALL_NANOS) {
+                            record(Metric.EDT_STALLS, 1);
+                            EdtStallEvent stall = new EdtStallEvent();
+                            stall.eventType = event.getClass().getName();
+                            stall.queueWait = wait;
+                            stall.commit();
+                        }
+                    }
+                    boolean outerPumped = pumped || depth > 0;
+                    pumped = false;
+                    depth++;
+                    try {
+                        super.dispatchEvent(event);
+                    } finally {
+                        long nanos = System.nanoTime() - start;
+                        depth--;
+                        boolean nested = pumped;
+                        pumped = outerPumped;
+                        if (!nested) {
+                            record(Metric.EDT_BUSY_TIME, nanos);
+                        }
+                    }
+                }
+            });
+        }
+
+        @Name("inieditor.FolderScan")
+        @Label("Folder Scan")
+        @Category("INI Editor")
+        static final class ScanEvent extends Event {
+            @Label("Folder")
+            String folder;
+            @Label("Folders")
+            int folders;
+            @Label("INI Files")
+            int files;
+        }
+
+        @Name("inieditor.FileRead")
+        @Label("File Read")
+        @Category("INI Editor")
+        static final class ReadEvent extends Event {
+            @Label("File")
+            String file;
+            @Label("Bytes")
+            @DataAmount
+            long bytes;
+        }
+
+        @Name("inieditor.Parse")
+        @Label("Parse")
+        @Category("INI Editor")
+        static final class ParseEvent extends Event {
+            @Label("File")
+            String file;
+            @Label("Lines")
+            int lines;
+            @Label("From Cache")
+            boolean cacheHit;
+        }
+
+        @Name("inieditor.TabLoad")
+        @Label("Tab Load")
+        @Category("INI Editor")
+        static final class TabLoadEvent extends Event {
+            @Label("File")
+            String file;
+            @Label("Rows")
+            int rows;
+            @Label("First Row")
+            @Timespan
+            long firstRow;
+            @Label("Row Insert Time")
+            @Timespan
+            long insertTime;
+        }
+
+        @Name("inieditor.Save")
+        @Label("Save")
+        @Category("INI Editor")
+        static final class SaveEvent extends Event {
+            @Label("File")
+            String file;
+            @Label("Edits")
+            int edits;
+            @Label("Bytes")
+            @DataAmount
+            long bytes;
+            @Label("Succeeded")
+            boolean succeeded;
+        }
+
+        @Name("inieditor.EdtStall")
+        @Label("EDT Stall")
+        @Category("INI Editor")
+        static final class EdtStallEvent extends Event {
+            @Label("Event Type")
+            String eventType;
+            @Label("Queue Wait")
+            @Timespan
+            long queueWait;
+        }
+    }
+
+    /**
+     * Headless batch mode, used when the editor is started with arguments. Files are read and saved with the
+     * same engine as the GUI (span-patched, atomic writes with backups), streamed so that size does not
+     * matter, and processed in parallel; each file's result is printed as soon as it is done.
+     */
+    static final class Cli {
+        private static final String USAGE = String.join("\n",
+                "Usage: INIEditor <command> [options] ...",
+                "  get <section> <key> <file|glob>...          print a value",
+                "  set <section> <key> <value> <file|glob>...  change a value where the key exists",
+                "  apply-patch <patch.ini> <file|glob>...      set every [section] key=value of the patch file",
+                "  diff <a> <b>                                list added (+), removed (-) and changed (~) keys of two files or folders",
+                "Options: --dry-run (report, do not write), --backups <n> (rotated .bak copies, default " + DEFAULT_BACKUP_COUNT + ")",
+                "Globs use java.nio glob syntax, e.g. \"mods/**/*.ini\". Use \"\" for keys before the first section.",
+                "Exit status: 0 on success, 1 if a key was missing or a file failed, 2 on bad usage.");
+
+        private final PrintStream out;
+        private final PrintStream err;
+        private boolean dryRun;
+        private int backups = DEFAULT_BACKUP_COUNT;
+        private final AtomicInteger problems = new AtomicInteger();
+        private final BackgroundExecutor.Lane lane = new BackgroundExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()))
+                .lane(BackgroundExecutor.Priority.INTERACTIVE, false);
+
+        Cli(PrintStream out, PrintStream err) {
+            this.out = out;
+            this.err = err;
+        }
+
+        int run(String[] args) {
+            List<String> arguments = new ArrayList<>();
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--dry-run" -> dryRun = true;
+                    case "--backups" -> {
+                        if (i + 1 == args.length) {
+                            return usage("--backups needs a number");
+                        }
+                        try {
+                            backups = Math.max(0, Integer.parseInt(args[++i]));
+                        } catch (NumberFormatException e) {
+                            return usage("--backups needs a number");
+                        }
+                    }
+                    default -> arguments.add(args[i]);
+                }
+            }
+            if (arguments.isEmpty() || arguments.get(0).equals("help") || arguments.get(0).equals("--help")) {
+                out.println(USAGE);
+                return 0;
+            }
+
+            String command = arguments.get(0);
+            List<String> operands = arguments.subList(1, arguments.size());
+            try {
+                switch (command) {
+                    case "get" -> {
+                        if (operands.size() < 3) {
+                            return usage("get needs <section> <key> <file|glob>...");
+                        }
+                        String section = operands.get(0);
+                        String key = operands.get(1);
+                        forEachFile(operands.subList(2, operands.size()), file -> {
+                            String[] found = new String[1];
+                            IniStream.read(file.toPath(), TextFormat.probe(file.toPath()), (line, byteOffset) -> {
+                                if (line.isEntry(section, key)) {
+                                    found[0] = line.value();
+                                    return false;
+                                }
+                                return true;
+                            });
+                            String value = found[0];
+                            if (value == null) {
+                                problems.incrementAndGet();
+                                return file + ": [" + section + "] " + key + " not found";
+                            }
+                            return file + ": [" + section + "] " + key + "=" + value;
+                        });
+                    }
+                    case "set" -> {
+                        if (operands.size() < 4) {
+                            return usage("set needs <section> <key> <value> <file|glob>...");
+                        }
+                        String value = IniTokenizer.storable(operands.get(2)); // Quoted if it holds a ';' or "//"
+                        if (value == null) {
+                            return usage("a value with ';' or \"//\" cannot also hold a double quote or a line break");
+                        }
+                        List<Assignment> values = List.of(new Assignment(operands.get(0), operands.get(1), value));
+                        forEachFile(operands.subList(3, operands.size()), file -> apply(file, values));
+                    }
+                    case "apply-patch" -> {
+                        if (operands.size() < 2) {
+                            return usage("apply-patch needs <patch.ini> <file|glob>...");
+                        }
+                        Map<IniDocument.Key, Assignment> values = new LinkedHashMap<>(); // Last assignment of a key wins
+                        for (IniDocument.Line line : IniDocument.parse(new File(operands.get(0))).lines()) {
+                            if (line.kind() == IniDocument.LineKind.ENTRY) {
+                                values.put(new IniDocument.Key(line.section(), line.key()), new Assignment(line.section(), line.key(), line.value()));
+                            }
+                        }
+                        List<Assignment> assignments = new ArrayList<>(values.values());
+                        forEachFile(operands.subList(1, operands.size()), file -> apply(file, assignments));
+                    }
+                    case "diff" -> {
+                        if (operands.size() != 2) {
+                            return usage("diff needs two files or two folders");
+                        }
+                        ScanOptions options = new ScanOptions(DEFAULT_SCAN_MAX_DEPTH, List.of(DEFAULT_SCAN_EXCLUDES));
+                        for (IniDiff.Difference difference : IniDiff.compare(new File(operands.get(0)), new File(operands.get(1)), options, lane).differences()) {
+                            out.println(format(difference));
+                        }
+                    }
+                    default -> {
+                        return usage("Unknown command: " + command);
+                    }
+                }
+            } catch (IOException e) {
+                err.println("Error: " + e.getMessage());
+                return 1;
+            }
+            return problems.get() == 0 ? 0 : 1;
+        }
+
+        private int usage(String message) {
+            err.println(message);
+            err.println(USAGE);
+            return 2;
+        }
+
+        record Assignment(String section, String key, String value) {}
+
+        interface FileAction {
+            String apply(File file) throws IOException;
+        }
+
+        /** Runs {@code action} on every matching file in parallel, printing each result line as it completes. */
+        private void forEachFile(List<String> patterns, FileAction action) throws IOException {
+            List<File> files = expand(patterns);
+            if (files.isEmpty()) {
+                err.println("No files match " + String.join(" ", patterns));
+                problems.incrementAndGet();
+                return;
+            }
+            lane.map(files, file -> {
+                try {
+                    out.println(action.apply(file));
+                } catch (IOException | RuntimeException e) {
+                    problems.incrementAndGet();
+                    err.println(file + ": " + e.getMessage());
+                }
+                return null;
+            });
+        }
+
+        /** Sets the assigned values where the keys exist in {@code file}, writing only if something changed. */
+        private String apply(File file, List<Assignment> assignments) throws IOException {
+            Map<IniDocument.Key, String> values = new HashMap<>();
+            for (Assignment assignment : assignments) {
+                values.put(new IniDocument.Key(assignment.section(), assignment.key()), assignment.value());
+            }
+            IniStream.Plan plan = IniStream.plan(file.toPath(), TextFormat.probe(file.toPath()), values);
+            List<String> missing = new ArrayList<>();
+            for (Assignment assignment : assignments) {
+                if (!plan.found().contains(new IniDocument.Key(assignment.section(), assignment.key()))) {
+                    missing.add("[" + assignment.section() + "] " + assignment.key());
+                }
+            }
+            if (!dryRun) {
+                IniStream.write(file.toPath(), plan, backups);
+            }
+            if (!missing.isEmpty()) {
+                problems.incrementAndGet();
+            }
+            return file + ": " + plan.patches().size() + (dryRun ? " to change" : " changed")
+                    + (missing.isEmpty() ? "" : ", missing " + String.join(", ", missing));
+        }
+
+        private static String format(IniDiff.Difference difference) {
+            String file = difference.file().isEmpty() ? "" : difference.file() + ": ";
+            if (difference.isFile()) {
+                return (difference.kind() == IniDiff.Kind.ADDED ? "+ " : "- ") + difference.file();
+            }
+            String key = "[" + difference.section() + "] " + difference.key();
+            return switch (difference.kind()) {
+                case ADDED -> file + "+ " + key + "=" + difference.right();
+                case REMOVED -> file + "- " + key + "=" + difference.left();
+                case CHANGED -> file + "~ " + key + ": " + difference.left() + " -> " + difference.right();
+            };
+        }
+
+        /**
+         * Expands file names and globs. A glob is matched below its longest literal folder prefix; the walk
+         * only goes deeper than the pattern's own folder count when the pattern contains "**".
+         */
+        static List<File> expand(List<String> patterns) throws IOException {
+            Set<File> files = new LinkedHashSet<>();
+            for (String pattern : patterns) {
+                if (!pattern.matches(".*[*?\\[{].*")) {
+                    files.add(new File(pattern));
+                    continue;
+                }
+                String normalized = pattern.replace('\\', '/');
+                String[] segments = normalized.split("/");
+                int literal = 0;
+                while (literal < segments.length - 1 && !segments[literal].matches(".*[*?\\[{].*")) {
+                    literal++;
+                }
+                String prefix = String.join("/", Arrays.asList(segments).subList(0, literal));
+                Path base = literal == 0 ? Path.of("") : Path.of(normalized.startsWith("/") ? "/" + prefix : prefix);
+                int depth = normalized.contains("**") ? Integer.MAX_VALUE : segments.length - literal;
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized);
+                if (!Files.isDirectory(base.toString().isEmpty() ? Path.of(".") : base)) {
+                    continue;
+                }
+                try (Stream<Path> walk = Files.walk(base.toString().isEmpty() ? Path.of(".") : base, depth)) {
+                    walk.filter(Files::isRegularFile)
+                            .map(path -> base.toString().isEmpty() ? Path.of(".").relativize(path) : path)
+                            .filter(matcher::matches)
+                            .sorted()
+                            .forEach(path -> files.add(path.toFile()));
+                }
+            }
+            return new ArrayList<>(files);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            System.setProperty("java.awt.headless", "true");
+            System.exit(new Cli(System.out, System.err).run(args));
+        }
+        SwingUtilities.invokeLater(() -> {
+            INIEditor editor = new INIEditor();
+            editor.setVisible(true);
+        });
+    }
+}
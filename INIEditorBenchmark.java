@@ -0,0 +1,264 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Micro-benchmarks for the editor's load, model, save and scan paths, and the fixture generator they use.
+ * This is development tooling and not part of the editor; build and run it next to it with
+ * {@code javac INIEditor.java INIEditorBenchmark.java} and {@code java INIEditorBenchmark bench [<name-filter>]}.
+ * Each benchmark is warmed up, then run for a fixed time and reported as average time per operation,
+ * like a JMH average-time run with one fork. Inputs come from {@link #generate}, which writes INIs shaped
+ * like NFS mod configs: a comment header, keys before the first section, "//" and ";" descriptions,
+ * quoted paths, hex and float values, blank lines and the odd duplicate key.
+ */
+public final class INIEditorBenchmark {
+    private static final String USAGE = String.join("\n",
+            "Usage: INIEditorBenchmark <command> ...",
+            "  generate <folder> <files> <keys-per-file>   write a synthetic corpus of NFS-style INIs",
+            "  bench [<name-filter>]                       time parse, load, model, save and scan paths");
+    static final int[] KEY_COUNTS = {10, 1_000, 10_000, 100_000};
+    static final int[] FILE_COUNTS = {1, 10, 100, 1_000};
+    private static final int KEYS_PER_SCANNED_FILE = 200;
+    private static final int FILES_PER_FOLDER = 25;
+    private static final long WARMUP_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MEASURE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final String[] SECTIONS = {"Hotkeys", "Gameplay", "Pursuit", "Menu", "Misc", "Physics", "Engine",
+            "Transmission", "Suspension", "Tires", "Aerodynamics", "Camera", "Graphics", "Audio", "Traffic"};
+    private static final String[] KEYS = {"HeatLevel", "CopLights", "EnableSaveLoadHotPos", "Torque", "RedLine",
+            "GearRatio", "SpringStiffness", "Downforce", "FOV", "ShowAllCarsInFE", "MaxCops", "GripScale",
+            "BrakeBias", "TexturePath", "ToggleHUD", "StartingCash", "RollCenter", "DragCoefficient"};
+    private static final String[] DESCRIPTIONS = {"Default value", "0 = off, 1 = on", "Range: 1-10",
+            "Requires restart", "Key code (hex)", "Multiplier", "Tweaked for drift builds"};
+
+    private final PrintStream out;
+    private final String filter;
+    private volatile long sink; // Keeps results alive so the JIT cannot drop the work
+    private final INIEditor.BackgroundExecutor.Lane lane = new INIEditor.BackgroundExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()))
+            .lane(INIEditor.BackgroundExecutor.Priority.INTERACTIVE, false);
+
+    INIEditorBenchmark(PrintStream out, String filter) {
+        this.out = out;
+        this.filter = filter;
+    }
+
+    /** Returns an INI text with {@code keys} entries. */
+    static String generate(Random random, int keys) {
+        StringBuilder ini = new StringBuilder(keys * 40 + 256);
+        ini.append("// Generated mod configuration\r\n; Edit with care, values are read at startup\r\n\r\n");
+        ini.append("Version = ").append(random.nextInt(9) + 1).append(".").append(random.nextInt(10)).append("\r\n");
+        int written = 1;
+        for (int section = 0; written < keys; section++) {
+            String name = SECTIONS[section % SECTIONS.length] + (section < SECTIONS.length ? "" : String.valueOf(section / SECTIONS.length));
+            ini.append("\r\n[").append(name).append("]\r\n");
+            if (random.nextInt(4) == 0) {
+                ini.append("; ").append(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]).append("\r\n");
+            }
+            int entries = Math.min(keys - written, 5 + random.nextInt(40));
+            for (int i = 0; i < entries; i++, written++) {
+                int k = i > 0 && random.nextInt(100) == 0 ? i - 1 : i; // About 1% repeat the previous key
+                String key = KEYS[k % KEYS.length] + (k < KEYS.length ? "" : String.valueOf(k / KEYS.length));
+                ini.append(key).append(random.nextBoolean() ? " = " : "=").append(value(random, key));
+                switch (random.nextInt(4)) {
+                    case 0 -> ini.append(" ; ").append(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]);
+                    case 1 -> ini.append(" // ").append(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]);
+                    default -> {
+                    }
+                }
+                ini.append("\r\n");
+            }
+        }
+        return ini.toString();
+    }
+
+    private static String value(Random random, String key) {
+        if (key.startsWith("TexturePath")) {
+            return "\"GLOBAL\\TEXTURES\\car" + random.nextInt(100) + ";hi.tpk\"";
+        }
+        return switch (random.nextInt(4)) {
+            case 0 -> String.valueOf(random.nextInt(2));
+            case 1 -> String.valueOf(random.nextInt(10_000));
+            case 2 -> String.format(Locale.ROOT, "%.3f", random.nextDouble() * 10);
+            default -> String.format("0x%02X", random.nextInt(256));
+        };
+    }
+
+    /** Writes {@code files} generated INIs into {@code directory}, {@value #FILES_PER_FOLDER} per subfolder. */
+    static List<File> generateFolder(Path directory, int files, int keysPerFile, long seed) throws IOException {
+        Random random = new Random(seed);
+        List<File> written = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            Path folder = directory.resolve(String.format("mod%03d", i / FILES_PER_FOLDER));
+            Files.createDirectories(folder);
+            Path file = folder.resolve(String.format("config%04d.ini", i));
+            Files.writeString(file, generate(random, keysPerFile), Charset.defaultCharset());
+            written.add(file.toFile());
+        }
+        return written;
+    }
+
+    interface Operation {
+        long run() throws IOException;
+    }
+
+    /** Runs every benchmark whose name contains the filter, printing one line per benchmark and size. */
+    void run() throws IOException {
+        Path work = Files.createTempDirectory("inieditor-bench");
+        try {
+            out.printf("%-22s %10s %12s %12s  %s%n", "Benchmark", "Size", "ms/op", "ops/s", "Throughput");
+            for (int keys : KEY_COUNTS) {
+                if (!selected("parse", "load", "model", "save-1-key", "save-all-keys")) {
+                    break;
+                }
+                String content = generate(new Random(keys), keys);
+                long bytes = content.getBytes(Charset.defaultCharset()).length;
+                File file = work.resolve("bench" + keys + ".ini").toFile();
+                Files.writeString(file.toPath(), content, Charset.defaultCharset());
+                INIEditor.IniDocument parsed = INIEditor.IniDocument.parse(file, content);
+                int lineCount = parsed.lines().size();
+                String size = keys + " keys";
+
+                measure("parse", size, () -> INIEditor.IniDocument.parse(file, content).lines().size(),
+                        nanos -> String.format("%.1f MB/s, %.0f lines/s", bytes / 1e6 / (nanos / 1e9), lineCount / (nanos / 1e9)));
+                measure("load", size, () -> INIEditor.IniDocument.load(file, null).lines().size(),
+                        nanos -> String.format("%.1f MB/s", bytes / 1e6 / (nanos / 1e9)));
+                measure("model", size, () -> buildModel(parsed).getRowCount(), null);
+
+                INIEditor.IniDocument[] current = {INIEditor.IniDocument.parse(file)};
+                List<INIEditor.IniDocument.Line> entries = parsed.lines().stream().filter(line -> line.kind() == INIEditor.IniDocument.LineKind.ENTRY).toList();
+                int[] round = {0};
+                measure("save-1-key", size, () -> {
+                    current[0] = current[0].write(List.of(new INIEditor.IniDocument.Edit(entries.get(0).number(), "v" + round[0]++)), 0);
+                    return current[0].lines().size();
+                }, null);
+                measure("save-all-keys", size, () -> {
+                    String value = "v" + round[0]++;
+                    List<INIEditor.IniDocument.Edit> edits = new ArrayList<>(entries.size());
+                    for (INIEditor.IniDocument.Line entry : entries) {
+                        edits.add(new INIEditor.IniDocument.Edit(entry.number(), value));
+                    }
+                    current[0] = current[0].write(edits, 0);
+                    return current[0].lines().size();
+                }, nanos -> String.format("%.0f keys/s", entries.size() / (nanos / 1e9)));
+            }
+            for (int files : FILE_COUNTS) {
+                if (!selected("scan", "scan-and-parse")) {
+                    break;
+                }
+                Path folder = work.resolve("scan" + files);
+                generateFolder(folder, files, KEYS_PER_SCANNED_FILE, files);
+                String size = files + " files";
+                measure("scan", size, () -> {
+                    List<File> found = Collections.synchronizedList(new ArrayList<>());
+                    new INIEditor.FolderScan(folder, new INIEditor.ScanOptions(INIEditor.DEFAULT_SCAN_MAX_DEPTH, List.of()), found::add, () -> false).run(lane);
+                    return found.size();
+                }, nanos -> String.format("%.0f files/s", files / (nanos / 1e9)));
+                measure("scan-and-parse", size, () -> {
+                    List<File> found = Collections.synchronizedList(new ArrayList<>());
+                    new INIEditor.FolderScan(folder, new INIEditor.ScanOptions(INIEditor.DEFAULT_SCAN_MAX_DEPTH, List.of()), found::add, () -> false).run(lane);
+                    return lane.map(found, file -> INIEditor.IniDocument.parse(file).lines().size()).stream().mapToLong(Integer::longValue).sum();
+                }, nanos -> String.format("%.0f files/s", files / (nanos / 1e9)));
+            }
+        } finally {
+            try (Stream<Path> walk = Files.walk(work)) {
+                walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /** Fills a table model the way a loading tab does, in row batches. */
+    private static INIEditor.IniTableModel buildModel(INIEditor.IniDocument document) {
+        INIEditor.IniTableModel model = new INIEditor.IniTableModel();
+        List<INIEditor.IniDocument.Line> batch = new ArrayList<>(INIEditor.ROW_BATCH_SIZE);
+        for (INIEditor.IniDocument.Line line : document.lines()) {
+            if (line.isRow()) {
+                batch.add(line);
+                if (batch.size() == INIEditor.ROW_BATCH_SIZE) {
+                    model.addRows(batch);
+                    batch = new ArrayList<>(INIEditor.ROW_BATCH_SIZE);
+                }
+            }
+        }
+        model.addRows(batch);
+        model.setDocument(document);
+        return model;
+    }
+
+    /** Whether the filter picks any of the named benchmarks. */
+    private boolean selected(String... names) {
+        for (String name : names) {
+            if (filter == null || name.contains(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void measure(String name, String size, Operation operation, LongFunction<String> throughput)
+            throws IOException {
+        if (!selected(name)) {
+            return;
+        }
+        long result = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < WARMUP_NANOS) {
+            result += operation.run();
+        }
+        int ops = 0;
+        start = System.nanoTime();
+        long elapsed;
+        do {
+            result += operation.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+        sink += result;
+        long nanosPerOp = elapsed / ops;
+        out.printf("%-22s %10s %12.3f %12.1f  %s%n", name, size, nanosPerOp / 1e6, 1e9 / nanosPerOp,
+                throughput == null ? "" : throughput.apply(nanosPerOp));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println(USAGE);
+            return;
+        }
+        switch (args[0]) {
+            case "generate" -> {
+                if (args.length != 4) {
+                    usage("generate needs <folder> <files> <keys-per-file>");
+                }
+                try {
+                    List<File> files = generateFolder(Path.of(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), 42);
+                    System.out.println(files.size() + " files written to " + args[1]);
+                } catch (NumberFormatException e) {
+                    usage("generate needs numbers for <files> and <keys-per-file>");
+                }
+            }
+            case "bench" -> {
+                if (args.length > 2) {
+                    usage("bench takes at most one <name-filter>");
+                }
+                new INIEditorBenchmark(System.out, args.length == 2 ? args[1] : null).run();
+            }
+            default -> usage("Unknown command: " + args[0]);
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}